@@ -11,12 +11,23 @@ public final class App extends Application {
         launch(args);
     }
 
+    /**
+     * With {@code --wall=N} N games played by bots are shown instead of a single game.
+     */
     public void start(Stage primaryStage) throws Exception {
 
 
         primaryStage.setTitle("Tetris");
 
-        Scene scene = new Scene(new Tetris());
+        String wall = getParameters().getNamed().get("wall");
+        Scene scene;
+        if (wall != null) {
+            BoardWall boardWall = new BoardWall(Integer.parseInt(wall), System.nanoTime());
+            boardWall.start();
+            scene = new Scene(boardWall);
+        } else {
+            scene = new Scene(new Tetris());
+        }
 
         primaryStage.setScene(scene);
         primaryStage.show();
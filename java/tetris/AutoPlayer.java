@@ -0,0 +1,381 @@
+package tetris;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Chooses where the falling tetromino should go.
+ * <p>
+ * Every orientation and column which can be reached from the spawn position by rotating first and then moving
+ * sideways is dropped onto a copy of the board, and the resulting board is rated by {@link Weights}. With a
+ * lookahead, the best placements are rated by the best result of the next tetrominos of the queue instead.
+ * The placements of the current tetromino are rated in parallel on a fork/join pool.
+ */
+final class AutoPlayer {
+
+    private static final int ROWS = GameEngine.ROWS;
+
+    private static final int COLUMNS = GameEngine.COLUMNS;
+
+    private static final int BOARD_MASK = ((1 << COLUMNS) - 1) << GameEngine.LEFT_WALL;
+
+    /**
+     * Number of placements of the current tetromino rated by one fork/join task.
+     */
+    private static final int PLACEMENTS_PER_TASK = 4;
+
+    /**
+     * Number of the best placements which are searched deeper on every level of the lookahead.
+     */
+    private static final int BEAM_WIDTH = 8;
+
+    private final Weights weights;
+
+    private final int lookahead;
+
+    private final long timeLimit;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * A player without lookahead.
+     */
+    public AutoPlayer(Weights weights) {
+        this(weights, 0, 0, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param lookahead number of tetrominos of the queue taken into account, at most {@link GameEngine#PREVIEW_SIZE}.
+     * @param timeLimit nanoseconds after which the lookahead is cut short, 0 for no limit.
+     */
+    public AutoPlayer(Weights weights, int lookahead, long timeLimit, ForkJoinPool pool) {
+        this.weights = weights;
+        this.lookahead = Math.min(lookahead, GameEngine.PREVIEW_SIZE);
+        this.timeLimit = timeLimit;
+        this.pool = pool;
+    }
+
+    public Weights getWeights() {
+        return weights;
+    }
+
+    /**
+     * The best placement of the falling tetromino of the engine, or null if there is none.
+     */
+    public Placement decide(GameEngine engine) {
+        if (engine.getKind() < 0 || engine.isGameOver()) {
+            return null;
+        }
+        int[] rows = new int[ROWS + GameEngine.FLOOR_ROWS];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = engine.getRow(i);
+        }
+        int[] queue = new int[lookahead];
+        for (int i = 0; i < lookahead; i++) {
+            queue[i] = engine.getNextKind(i);
+        }
+        // Rotating and moving starts where the tetromino is now, which is the spawn position for a new one.
+        int kind = engine.getKind();
+        int y = engine.getY();
+        Placement[] placements = placements(rows, kind, engine.getRotation(), engine.getX(), y);
+        if (placements.length == 0) {
+            return null;
+        }
+        Placement best = best(placements);
+
+        // Deepen the search one tetromino of the queue at a time, a search which runs out of time is discarded.
+        long deadline = timeLimit > 0 ? System.nanoTime() + timeLimit : Long.MAX_VALUE;
+        for (int depth = 1; depth <= lookahead; depth++) {
+            Search search = new Search(rows, kind, y, placements, Arrays.copyOf(queue, depth), deadline, 0, placements.length);
+            if (placements.length > PLACEMENTS_PER_TASK) {
+                pool.invoke(search);
+            } else {
+                search.compute();
+            }
+            if (System.nanoTime() > deadline) {
+                break;
+            }
+            best = best(placements);
+        }
+        return best;
+    }
+
+    private static Placement best(Placement[] placements) {
+        Placement best = placements[0];
+        for (Placement placement : placements) {
+            if (placement.score > best.score) {
+                best = placement;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * All placements of a tetromino which can be reached from the given position, each with the rating of the
+     * board it leaves behind.
+     */
+    private Placement[] placements(int[] rows, int kind, int rotation, int x, int y) {
+        TetrominoShape shape = TetrominoShape.SHAPES[kind];
+        Placement[] placements = new Placement[TetrominoShape.ORIENTATIONS * COLUMNS];
+        int count = 0;
+        int[] target = new int[rows.length];
+
+        for (int r = 0; r < TetrominoShape.ORIENTATIONS; r++) {
+            int targetRotation = (rotation + r) % TetrominoShape.ORIENTATIONS;
+            TetrominoShape.Orientation orientation = shape.getOrientation(targetRotation);
+            if (GameEngine.intersects(rows, orientation, x, y)) {
+                // The rotation is blocked, so are all further ones.
+                break;
+            }
+            for (int direction = -1; direction <= 1; direction += 2) {
+                int targetX = direction < 0 ? x : x + 1;
+                while (!GameEngine.intersects(rows, orientation, targetX, y)) {
+                    System.arraycopy(rows, 0, target, 0, rows.length);
+                    int lines = drop(target, orientation, targetX, y);
+                    placements[count++] = new Placement(targetRotation, targetX, lines, rate(target, lines));
+                    targetX += direction;
+                }
+            }
+        }
+        return Arrays.copyOf(placements, count);
+    }
+
+    /**
+     * Drops the orientation from (x, y) onto the rows and removes complete rows.
+     *
+     * @return the number of eliminated rows.
+     */
+    private static int drop(int[] rows, TetrominoShape.Orientation orientation, int x, int y) {
+        while (!GameEngine.intersects(rows, orientation, x, y + 1)) {
+            y++;
+        }
+        int shift = x + GameEngine.LEFT_WALL;
+        int lines = 0;
+        for (int i = orientation.top; i <= orientation.bottom; i++) {
+            rows[y + i] |= orientation.masks[i] << shift;
+            if (rows[y + i] == GameEngine.FULL_ROW) {
+                lines++;
+            }
+        }
+        if (lines > 0) {
+            int target = ROWS - 1;
+            for (int i = ROWS - 1; i >= 0; i--) {
+                if (rows[i] != GameEngine.FULL_ROW) {
+                    rows[target--] = rows[i];
+                }
+            }
+            while (target >= 0) {
+                rows[target--] = GameEngine.EMPTY_ROW;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Rates a board, the higher the better.
+     */
+    double rate(int[] rows, int lines) {
+        int aggregateHeight = 0;
+        int holes = 0;
+        int bumpiness = 0;
+
+        // Columns which have a block in this or a higher row.
+        int covered = 0;
+        int[] heights = new int[COLUMNS];
+        for (int i = 0; i < ROWS; i++) {
+            int row = rows[i] & BOARD_MASK;
+            int top = row & ~covered;
+            while (top != 0) {
+                int bit = Integer.numberOfTrailingZeros(top);
+                heights[bit - GameEngine.LEFT_WALL] = ROWS - i;
+                top &= top - 1;
+            }
+            covered |= row;
+            holes += Integer.bitCount(covered & ~row);
+        }
+        for (int j = 0; j < COLUMNS; j++) {
+            aggregateHeight += heights[j];
+            if (j > 0) {
+                bumpiness += Math.abs(heights[j] - heights[j - 1]);
+            }
+        }
+        return weights.height * aggregateHeight + weights.holes * holes + weights.bumpiness * bumpiness
+                + weights.lines * lines;
+    }
+
+    /**
+     * The best rating reachable by placing the given tetrominos one after the other on the rows. Only the
+     * best rated placements on every level are searched further.
+     */
+    private double best(int[] rows, int[] kinds, int depth, long deadline) {
+        Placement[] placements = placements(rows, kinds[depth], 0, GameEngine.spawnX(kinds[depth]), 0);
+        if (placements.length == 0) {
+            // The tetromino can't even spawn.
+            return -Double.MAX_VALUE;
+        }
+        if (depth + 1 == kinds.length || System.nanoTime() > deadline) {
+            return best(placements).score;
+        }
+        Arrays.sort(placements);
+        int width = Math.min(BEAM_WIDTH, placements.length);
+        int[] target = new int[rows.length];
+        double best = -Double.MAX_VALUE;
+        for (int i = 0; i < width; i++) {
+            Placement placement = placements[i];
+            System.arraycopy(rows, 0, target, 0, rows.length);
+            drop(target, TetrominoShape.SHAPES[kinds[depth]].getOrientation(placement.rotation), placement.x, 0);
+            best = Math.max(best, weights.lines * placement.lines + best(target, kinds, depth + 1, deadline));
+        }
+        return best;
+    }
+
+    /**
+     * Rates a range of placements of the current tetromino by the tetrominos of the queue, splitting the range
+     * up while it is large.
+     */
+    @SuppressWarnings("serial")
+    private final class Search extends RecursiveTask<Void> {
+
+        private final int[] rows;
+
+        private final int kind, y;
+
+        private final Placement[] placements;
+
+        private final int[] kinds;
+
+        private final long deadline;
+
+        private final int from, to;
+
+        private Search(int[] rows, int kind, int y, Placement[] placements, int[] kinds, long deadline, int from, int to) {
+            this.rows = rows;
+            this.kind = kind;
+            this.y = y;
+            this.placements = placements;
+            this.kinds = kinds;
+            this.deadline = deadline;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Void compute() {
+            if (to - from > PLACEMENTS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Search(rows, kind, y, placements, kinds, deadline, from, middle),
+                        new Search(rows, kind, y, placements, kinds, deadline, middle, to));
+                return null;
+            }
+            int[] target = new int[rows.length];
+            for (int i = from; i < to; i++) {
+                Placement placement = placements[i];
+                System.arraycopy(rows, 0, target, 0, rows.length);
+                drop(target, TetrominoShape.SHAPES[kind].getOrientation(placement.rotation), placement.x, y);
+                placement.score = weights.lines * placement.lines + best(target, kinds, 0, deadline);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Where a tetromino should go: its rotation index and the column of its matrix.
+     */
+    static final class Placement implements Comparable<Placement> {
+
+        final int rotation;
+
+        final int x;
+
+        /**
+         * Number of rows the placement eliminates.
+         */
+        final int lines;
+
+        double score;
+
+        private Placement(int rotation, int x, int lines, double score) {
+            this.rotation = rotation;
+            this.x = x;
+            this.lines = lines;
+            this.score = score;
+        }
+
+        /**
+         * Best first.
+         */
+        @Override
+        public int compareTo(Placement other) {
+            return Double.compare(other.score, score);
+        }
+    }
+
+    /**
+     * The weights of the features of a board. Heights, holes and bumpiness should be negative, lines positive.
+     */
+    static final class Weights {
+
+        /**
+         * Weights found by tuning on full games.
+         */
+        static final Weights DEFAULT = new Weights(-0.510066, -0.35663, -0.184483, 0.760666);
+
+        /**
+         * The sum of the heights of all columns.
+         */
+        final double height;
+
+        /**
+         * Empty cells with a block above them.
+         */
+        final double holes;
+
+        /**
+         * The sum of the height differences of neighboring columns.
+         */
+        final double bumpiness;
+
+        /**
+         * Eliminated rows.
+         */
+        final double lines;
+
+        Weights(double height, double holes, double bumpiness, double lines) {
+            this.height = height;
+            this.holes = holes;
+            this.bumpiness = bumpiness;
+            this.lines = lines;
+        }
+
+        /**
+         * Reads weights written by {@link #format()}.
+         *
+         * @throws IllegalArgumentException if the value is not four comma separated numbers.
+         */
+        static Weights parse(String value) {
+            String[] parts = value.split(",");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Weights need four values: height,holes,bumpiness,lines");
+            }
+            try {
+                return new Weights(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()),
+                        Double.parseDouble(parts[2].trim()), Double.parseDouble(parts[3].trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weights " + value);
+            }
+        }
+
+        /**
+         * The weights as height,holes,bumpiness,lines.
+         */
+        String format() {
+            return height + "," + holes + "," + bumpiness + "," + lines;
+        }
+
+        @Override
+        public String toString() {
+            return "height=" + height + " holes=" + holes + " bumpiness=" + bumpiness + " lines=" + lines;
+        }
+    }
+}
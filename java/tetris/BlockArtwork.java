@@ -0,0 +1,57 @@
+package tetris;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.effect.Lighting;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The lit blocks of all kinds as images, shared by everything which draws on a canvas.
+ * <p>
+ * Rendering a block with its lighting takes a snapshot, so the images are made once per size and kept for the
+ * few sizes which were used last. Boards of the same size share the same images, which also lets the renderer
+ * keep a single texture per kind. Only for the JavaFX thread.
+ */
+final class BlockArtwork {
+
+    /**
+     * Number of sizes kept.
+     */
+    private static final int SIZES = 4;
+
+    private static final Map<Double, Image[]> BLOCKS = new LinkedHashMap<Double, Image[]>(SIZES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Double, Image[]> eldest) {
+            return size() > SIZES;
+        }
+    };
+
+    private BlockArtwork() {
+    }
+
+    /**
+     * One image per kind of a lit block of the given size, with the same lighting as the rectangles of
+     * {@link Tetromino}.
+     */
+    static Image[] blocks(double size) {
+        Image[] blocks = BLOCKS.get(size);
+        if (blocks == null) {
+            SnapshotParameters parameters = new SnapshotParameters();
+            parameters.setFill(Color.TRANSPARENT);
+            Lighting lighting = new Lighting();
+            lighting.setSurfaceScale(1);
+            blocks = new Image[TetrominoShape.SHAPES.length];
+            for (int i = 0; i < blocks.length; i++) {
+                Rectangle rectangle = new Rectangle(size, size, Tetromino.colorOf(i));
+                rectangle.setEffect(lighting);
+                blocks[i] = rectangle.snapshot(parameters, null);
+            }
+            BLOCKS.put(size, blocks);
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,65 @@
+package tetris;
+
+import javafx.scene.effect.Effect;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * The blocks which make up the settled stack of a {@link Board} drawn with nodes.
+ * <p>
+ * A board holds at most one block per cell, so the pool never holds more than {@link GameEngine#COLUMNS} *
+ * ({@link GameEngine#VISIBLE_ROWS} + {@link GameEngine#HIDDEN_ROWS}) of them. Each block is created once and reused
+ * after its {@link BlockRow} has been eliminated or the board cleared. Once the pool is full, playing allocates
+ * nothing for the stack.
+ */
+final class BlockPool {
+
+    static final int CAPACITY = GameEngine.COLUMNS * (GameEngine.VISIBLE_ROWS + GameEngine.HIDDEN_ROWS);
+
+    /**
+     * All blocks created so far.
+     */
+    private final Rectangle[] blocks = new Rectangle[CAPACITY];
+
+    private int created;
+
+    /**
+     * The blocks which are not on the board, the next one at free[size - 1].
+     */
+    private final Rectangle[] free = new Rectangle[CAPACITY];
+
+    private int size;
+
+    /**
+     * A block of one cell in the given column. Its row places it vertically.
+     *
+     * @throws IllegalStateException if all blocks are on the board.
+     */
+    Rectangle acquire(int x, Paint fill, Effect lighting) {
+        Rectangle block;
+        if (size > 0) {
+            block = free[--size];
+        } else if (created < CAPACITY) {
+            block = new Rectangle(Board.CELL, Board.CELL);
+            blocks[created++] = block;
+        } else {
+            throw new IllegalStateException("All " + CAPACITY + " blocks are on the board");
+        }
+        block.setFill(fill);
+        block.setEffect(lighting);
+        block.setTranslateX(x * Board.CELL);
+        return block;
+    }
+
+    void release(Rectangle block) {
+        free[size++] = block;
+    }
+
+    /**
+     * Takes back all blocks. They must not be children of a row any more.
+     */
+    void releaseAll() {
+        System.arraycopy(blocks, 0, free, 0, created);
+        size = created;
+    }
+}
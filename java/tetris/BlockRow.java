@@ -0,0 +1,86 @@
+package tetris;
+
+import javafx.animation.FadeTransition;
+import javafx.animation.TranslateTransition;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.Rectangle;
+import javafx.util.Duration;
+
+import java.util.List;
+
+/**
+ * One row of the settled stack of a {@link Board} drawn with nodes.
+ * <p>
+ * The blocks of a row are placed in their column, the row places them vertically, both in cells of
+ * {@link Board#CELL}. So an eliminated row flashes with one
+ * {@link FadeTransition} and the rows above fall with one {@link TranslateTransition} each, whatever number of
+ * blocks they hold. The rows are created once per board and reused.
+ */
+final class BlockRow extends Group {
+
+    private final BlockPool blockPool;
+
+    /**
+     * The row, counted from the top of the visible rows.
+     */
+    private int y;
+
+    private final FadeTransition fadeTransition = new FadeTransition(Duration.seconds(.01), this);
+
+    private final TranslateTransition fallTransition = new TranslateTransition(Duration.seconds(0.1), this);
+
+    BlockRow(BlockPool blockPool, int y) {
+        this.blockPool = blockPool;
+        // The board must not lay the row out by its bounds, it is placed by its translation.
+        setManaged(false);
+        moveTo(y);
+
+        fadeTransition.setToValue(0);
+        fadeTransition.setCycleCount(3);
+        fadeTransition.setAutoReverse(true);
+        fadeTransition.setOnFinished(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent actionEvent) {
+                List<Node> blocks = getChildren();
+                for (int i = 0; i < blocks.size(); i++) {
+                    BlockRow.this.blockPool.release((Rectangle) blocks.get(i));
+                }
+                reset(BlockRow.this.y);
+            }
+        });
+    }
+
+    /**
+     * Empties the row without giving its blocks back to the pool and puts it at the given row.
+     */
+    void reset(int y) {
+        getChildren().clear();
+        setOpacity(1);
+        moveTo(y);
+    }
+
+    private void moveTo(int y) {
+        this.y = y;
+        setTranslateY(y * Board.CELL);
+    }
+
+    /**
+     * Flashes the row, gives its blocks back to the pool and puts the empty row at the given row.
+     */
+    FadeTransition eliminate(int y) {
+        this.y = y;
+        return fadeTransition;
+    }
+
+    /**
+     * Lets the row fall to the given row.
+     */
+    TranslateTransition fallTo(int y) {
+        this.y = y;
+        fallTransition.setToY(y * Board.CELL);
+        return fallTransition;
+    }
+}
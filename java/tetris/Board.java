@@ -6,29 +6,71 @@ import javafx.application.Platform;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.binding.ObjectBinding;
 import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
-import javafx.beans.value.WeakChangeListener;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.HorizontalDirection;
 import javafx.geometry.Pos;
+import javafx.scene.Group;
 import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.effect.Effect;
 import javafx.scene.effect.Light;
+import javafx.scene.effect.Lighting;
 import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Paint;
 import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Scale;
 import javafx.util.Duration;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 
 final class Board extends StackPane {
 
     private boolean bot = false;
 
+    /**
+     * Время на поиск с просмотром очереди, в наносекундах.
+     */
+    private static final long BOT_TIME_LIMIT = 2000000;
+
+    /**
+     * Веса бота, -Dtetris.weights=height,holes,bumpiness,lines, например найденные tetris.Tuner.
+     */
+    private static final AutoPlayer.Weights BOT_WEIGHTS = System.getProperty("tetris.weights") == null
+            ? AutoPlayer.Weights.DEFAULT : AutoPlayer.Weights.parse(System.getProperty("tetris.weights"));
+
+    /**
+     * Нажатия бота и других потоков, доска выполняет их в каждом кадре.
+     */
+    private final CommandQueue commands = new CommandQueue(64);
+
+    /**
+     * Бот, который выбирает место для каждого Tetromino в своём потоке и шлёт нажатия в commands.
+     */
+    private final BotPlayer botPlayer = new BotPlayer(
+            new AutoPlayer(BOT_WEIGHTS, 1, BOT_TIME_LIMIT, ForkJoinPool.commonPool()), commands);
+
+    /**
+     * Выполняет команды из очереди в начале каждого кадра, пока играет бот.
+     */
+    private final AnimationTimer commandTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            applyCommands();
+        }
+    };
+
     private long startTime;
 
 
@@ -36,11 +78,31 @@ final class Board extends StackPane {
         this.bot = bot;
     }
 
-    private static final byte HIDDEN_ROWS = 2;
+    public boolean isBot() {
+        return bot;
+    }
+
+    private static final byte HIDDEN_ROWS = GameEngine.HIDDEN_ROWS;
+
+    private static final byte BLOCKS_PER_ROW = GameEngine.COLUMNS;
+
+    private static final byte BLOCKS_PER_COLUMN = GameEngine.VISIBLE_ROWS;
+
+    /**
+     * Размер клетки, в котором строятся прямоугольники. Освещение считается в этом размере, поэтому оно выглядит
+     * одинаково при любом масштабе.
+     */
+    static final double CELL = 35;
 
-    private static final byte BLOCKS_PER_ROW = 10;
+    /**
+     * Правила игры. Доска только показывает его состояние.
+     */
+    private final GameEngine engine = new GameEngine();
 
-    private static final byte BLOCKS_PER_COLUMN = 20;
+    /**
+     * Журнал событий игры, по умолчанию выключен. -Dtetris.journal=file:путь пишет его в файл.
+     */
+    private final EventJournal journal = EventJournal.create(System.getProperty("tetris.journal"));
 
     /*
      * Движение вниз.
@@ -73,26 +135,50 @@ final class Board extends StackPane {
     private final Set<Animation> runningAnimations = new HashSet<>();
 
     /**
-     * Двумерный массив, который определяет плату. Если элемент является нулевым в матрице, она пуста, в противном случае он занят.
+     * Все зарегистрированные анимации, которые ещё не собраны сборщиком мусора. Растёт, если доска их удерживает.
      */
-    private final Rectangle[][] matrix = new Rectangle[BLOCKS_PER_COLUMN + HIDDEN_ROWS][BLOCKS_PER_ROW];
+    private final Set<Animation> liveAnimations = Collections.newSetFromMap(new WeakHashMap<Animation, Boolean>());
 
     /**
-     * Список тетромино, которые приходят в следующем.
+     * Строки доски сверху вниз, в каждой прямоугольники её занятых клеток. Занятость клеток хранит engine,
+     * здесь только их изображения.
      */
-    private final ObservableList<Tetromino> waitingTetrominos = FXCollections.observableArrayList();
+    private final BlockRow[] rows = new BlockRow[BLOCKS_PER_COLUMN + HIDDEN_ROWS];
 
     /**
-     * Очень быстро выпадающие переход.
+     * Устраненные строки, пока они переставляются наверх.
      */
-    private final TranslateTransition dropDownTransition;
+    private final BlockRow[] eliminatedRows = new BlockRow[BLOCKS_PER_COLUMN + HIDDEN_ROWS];
+
+    /**
+     * Прямоугольники и их переходы, которые используются повторно.
+     */
+    private final BlockPool blockPool;
+
+    /**
+     * Мигание устраненных строк.
+     */
+    private final ParallelTransition deleteRowsTransition = new ParallelTransition();
 
-    private boolean moving = false;
+    /**
+     * Падение строк над устраненными.
+     */
+    private final ParallelTransition fallRowsTransition = new ParallelTransition();
 
     /**
-     * Ток х и у позиции с матрицей текущего Tetromino.
+     * Сначала устраненные строки мигают, потом падают строки над ними. После этого появляется новое Tetromino.
      */
-    private int x = 0, y = 0;
+    private final SequentialTransition clearRowsTransition = new SequentialTransition(deleteRowsTransition, fallRowsTransition);
+
+    /**
+     * Список тетромино, которые приходят в следующем.
+     */
+    private final ObservableList<Tetromino> waitingTetrominos = FXCollections.observableArrayList();
+
+    /**
+     * Очень быстро выпадающие переход.
+     */
+    private final TranslateTransition dropDownTransition;
 
     /**
      * Правда, в то время как Tetromino падает (с помощью клавиши пробела).
@@ -104,19 +190,45 @@ final class Board extends StackPane {
      */
     private Tetromino currentTetromino;
 
-    private List<BoardListener> boardListeners = new CopyOnWriteArrayList<>();
+    /**
+     * События доски, которые доставляются подписчикам раз в кадр.
+     */
+    private final BoardEvents events = new BoardEvents();
 
     private DoubleProperty squareSize = new SimpleDoubleProperty();
 
     /**
-     * Создает доску.
+     * Строки и падающее Tetromino, если доска рисуется прямоугольниками. Внутри клетка имеет размер CELL,
+     * размер клетки на экране задает одно масштабирование, поэтому изменение размера доски не трогает прямоугольники.
+     */
+    private final Group grid = new Group();
+
+    /**
+     * Скорость всех переходов. Больше 1 только при быстром повторе.
+     */
+    private double animationRate = 1;
+
+    /**
+     * Холст, на котором рисуется вся доска, или null, если каждый блок является отдельным прямоугольником.
+     */
+    private final BoardCanvas canvas;
+
+    /**
+     * Создает доску, блоки которой являются прямоугольниками.
      */
     public Board() {
+        this(false);
+    }
+
+    /**
+     * Создает доску. Если canvasRendering, то вся доска рисуется на одном холсте.
+     */
+    public Board(boolean canvasRendering) {
         setFocusTraversable(true);
 
         setId("board");
-        setMinWidth(35 * BLOCKS_PER_ROW);
-        setMinHeight(35 * BLOCKS_PER_COLUMN);
+        setMinWidth(CELL * BLOCKS_PER_ROW);
+        setMinHeight(CELL * BLOCKS_PER_COLUMN);
 
         maxWidthProperty().bind(minWidthProperty());
         maxHeightProperty().bind(minHeightProperty());
@@ -136,13 +248,6 @@ final class Board extends StackPane {
 
         //задаем скорость падения.
         moveDownTransition = new TranslateTransition(Duration.seconds(0.3));
-        moveDownTransition.setOnFinished(new EventHandler<ActionEvent>() {
-            @Override
-            public void handle(ActionEvent actionEvent) {
-                moving = false;
-                y++;
-            }
-        });
 
         //После того, как часть переместилась вниз, немного подождите, пока она не начнет двигаться снова.
         PauseTransition pauseTransition = new PauseTransition();
@@ -166,7 +271,6 @@ final class Board extends StackPane {
         moveDownFastTransition.setInterpolator(Interpolator.LINEAR);
         moveDownFastTransition.setOnFinished(new EventHandler<ActionEvent>() {
             public void handle(ActionEvent actionEvent) {
-                y++;
                 moveDownFast();
             }
         });
@@ -180,6 +284,15 @@ final class Board extends StackPane {
         rotateTransition = new RotateTransition(Duration.seconds(0.1));
         dropDownTransition = new TranslateTransition(Duration.seconds(0.1));
         dropDownTransition.setInterpolator(Interpolator.EASE_IN);
+        registerPausableAnimation(dropDownTransition);
+
+        clearRowsTransition.setOnFinished(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent actionEvent) {
+                spawnTetromino();
+            }
+        });
+        registerPausableAnimation(clearRowsTransition);
 
         squareSize.bind(new DoubleBinding() {
             {
@@ -191,6 +304,29 @@ final class Board extends StackPane {
                 return getWidth() / BLOCKS_PER_ROW;
             }
         });
+
+        blockPool = new BlockPool();
+        recordingFlush.setCycleCount(Animation.INDEFINITE);
+
+        if (canvasRendering) {
+            canvas = new BoardCanvas(engine, squareSize);
+            canvas.widthProperty().bind(widthProperty());
+            canvas.heightProperty().bind(heightProperty());
+            getChildren().add(canvas);
+        } else {
+            canvas = null;
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = new BlockRow(blockPool, i - HIDDEN_ROWS);
+            }
+            Scale scale = new Scale();
+            scale.xProperty().bind(squareSize.divide(CELL));
+            scale.yProperty().bind(scale.xProperty());
+            grid.getTransforms().add(scale);
+            // Доска не должна выравнивать сетку по её границам.
+            grid.setManaged(false);
+            grid.getChildren().addAll(rows);
+            getChildren().add(grid);
+        }
     }
 
     /**
@@ -198,6 +334,7 @@ final class Board extends StackPane {
      * если она остановлена. Когда игра останавливается, все запущенные анимации приостановлены.
      */
     private void registerPausableAnimation(final Animation animation) {
+        liveAnimations.add(animation);
         animation.statusProperty().addListener(new ChangeListener<Animation.Status>() {
             @Override
             public void changed(ObservableValue<? extends Animation.Status> observableValue, Animation.Status status, Animation.Status status2) {
@@ -205,61 +342,138 @@ final class Board extends StackPane {
                     runningAnimations.remove(animation);
                 } else {
                     runningAnimations.add(animation);
+                    animation.setRate(animationRate);
                 }
             }
         });
     }
 
     /**
-     * спавм новое случайное Tetromino.
+     * спавм Tetromino, которое уже выбрал engine.
      */
 
     private void spawnTetromino() {
+        showTetromino();
+        journal.record(EventJournal.SPAWN, engine.getKind(), engine.getNextKind(0));
 
-        //след. фигура
-        while (waitingTetrominos.size() <= 1) {
-            waitingTetrominos.add(Tetromino.random(squareSize));
-            System.out.println(waitingTetrominos.get(waitingTetrominos.size() - 1));
+        // Начинаем, чтобы переместить его.
+        moveDown();
+
+        if (bot) {
+            playBot();
         }
+    }
+
+    /**
+     * Показывает Tetromino движка там, где он сейчас находится, и очередь за ним.
+     */
+    private void showTetromino() {
 
         // Удаляем первый из очереди и создаем его.
-        currentTetromino = waitingTetrominos.remove(0);
+        currentTetromino = waitingTetrominos.isEmpty() ? Tetromino.of(engine.getKind()) : waitingTetrominos.remove(0);
+
+        //след. фигура
+        while (waitingTetrominos.size() < GameEngine.PREVIEW_SIZE) {
+            waitingTetrominos.add(Tetromino.of(engine.getNextKind(waitingTetrominos.size())));
+        }
 
         // Сбросить все переходы.
         rotateTransition.setNode(currentTetromino);
-        rotateTransition.setToAngle(0);
+        rotateTransition.setToAngle(engine.getRotation() * 90);
+        currentTetromino.setRotate(engine.getRotation() * 90);
 
         translateTransition.setNode(currentTetromino);
         moveDownTransition.setNode(currentTetromino);
         moveDownFastTransition.setNode(currentTetromino);
 
         // Добавление текущей Tetromino к доске.
-        getChildren().add(currentTetromino);
-
-        // Переместить его в правильное положение
-        // респ Tetromino в середине (I, O) или в левой середине (J, L, S, T, Z).
-        x = (matrix[0].length - currentTetromino.getMatrix().length) / 2;
-        y = 0;
+        if (canvas == null) {
+            grid.getChildren().add(currentTetromino);
+        } else {
+            canvas.setTetromino(currentTetromino, waitingTetrominos.get(0).getKind());
+        }
 
         // Перевести Tetromino в исходное положение.
-        currentTetromino.setTranslateY((y - Board.HIDDEN_ROWS) * getSquareSize());
-        currentTetromino.setTranslateX(x * getSquareSize());
+        currentTetromino.setTranslateY((engine.getY() - Board.HIDDEN_ROWS) * CELL);
+        currentTetromino.setTranslateX(engine.getX() * CELL);
+    }
 
+    /**
+     * Отдаёт боту копию движка, чтобы он выбрал место для текущего Tetromino.
+     */
+    private void playBot() {
+        GameEngine snapshot = new GameEngine();
+        snapshot.copyFrom(engine);
+        botPlayer.play(snapshot);
+    }
 
-        // Начинаем, чтобы переместить его.
-        moveDown();
+    /**
+     * Выполняет команды из очереди по порядку. Команды прошлых Tetromino выбрасываются, а новые ждут,
+     * пока Tetromino появится и перестанет падать.
+     */
+    private void applyCommands() {
+        for (long command = commands.peek(); command != CommandQueue.EMPTY; command = commands.peek()) {
+            if (CommandQueue.tag(command) == botPlayer.getGeneration()) {
+                if (currentTetromino == null || isDropping) {
+                    break;
+                }
+                applyCommand(CommandQueue.action(command));
+            }
+            commands.remove();
+        }
+    }
+
+    /**
+     * Выполняет команду как нажатие клавиши, поэтому она записывается в повтор.
+     */
+    private void applyCommand(byte action) {
+        switch (action) {
+            case Action.ROTATE:
+                rotate(HorizontalDirection.LEFT);
+                break;
+            case Action.ROTATE_RIGHT:
+                rotate(HorizontalDirection.RIGHT);
+                break;
+            case Action.MOVE_LEFT:
+                move(HorizontalDirection.LEFT);
+                break;
+            case Action.MOVE_RIGHT:
+                move(HorizontalDirection.RIGHT);
+                break;
+            case Action.DROP_DOWN:
+                dropDown();
+                break;
+            case Action.MOVE_DOWN:
+                moveDown();
+                break;
+        }
     }
 
     /**
      * Уведомление о Tetromino, что он не может двигаться дальше вниз.
      */
-    private void tetrominoDropped() {
-        if (y == 0) {
+    private void tetrominoDropped(int result) {
+        if (result == GameEngine.GAME_OVER) {
+            journal.record(EventJournal.GAME_OVER, engine.getKind(), 0);
             // Если кусок не мог двигаться, и мы все еще находятся в начальной позиции у, игра окончена.
             currentTetromino = null;
             waitingTetrominos.clear();
+            if (recorder != null) {
+                stopRecording();
+                // В архив попадают только игры человека.
+                if (!isBot()) {
+                    ARCHIVER.add(recording);
+                }
+            }
             notifyGameOver();
-        } else {
+        } else if (result == GameEngine.LOCKED) {
+            journal.record(EventJournal.LOCK, engine.getLockedKind(),
+                    EventJournal.position(engine.getLockedX(), engine.getLockedY(), engine.getLockedRotation()));
+            events.post(BoardEvents.DROPPED, engine.getLockedKind());
+            int clearedRows = engine.getClearedRows();
+            if (clearedRows != 0) {
+                journal.record(EventJournal.LINE_CLEAR, Integer.bitCount(clearedRows), clearedRows);
+            }
             mergeTetrominoWithBoard();
         }
     }
@@ -268,226 +482,257 @@ final class Board extends StackPane {
     * * Уведомляет, что игра окончена.
     */
    private void notifyGameOver() {
-       for (BoardListener boardListener : boardListeners) {
-           boardListener.onGameOver();
-       }
+       events.post(BoardEvents.GAME_OVER, 0);
    }
 
    /**
     * Уведомляет , что строки были устранены.
     */
    private void notifyOnRowsEliminated(int rows) {
-       for (BoardListener boardListener : boardListeners) {
-           boardListener.onRowsEliminated(rows);
-       }
+       events.post(BoardEvents.ROWS_ELIMINATED, rows);
    }
 
     /**
      * Объединяет Tetromino с доской.
-       Для каждой плитки, создаем прямоугольник в доске.
-       В конце концов удаляет Tetromino с доски и запускает новый.
+       Для каждой плитки, которую engine добавил в доску, создаем прямоугольник.
+       В конце концов удаляет Tetromino с доски и запускает новый.
      */
     private void mergeTetrominoWithBoard() {
-        int[][] tetrominoMatrix = currentTetromino.getMatrix();
+        if (canvas != null) {
+            // Холст рисует доску движка, переходы не нужны.
+            canvas.setTetromino(null, waitingTetrominos.get(0).getKind());
+            canvas.sync();
+            currentTetromino = null;
+            int rows = Integer.bitCount(engine.getClearedRows());
+            if (rows > 0) {
+                notifyOnRowsEliminated(rows);
+            }
+            spawnTetromino();
+            return;
+        }
+
+        int[][] tetrominoMatrix = engine.getLockedMatrix();
 
         for (int i = 0; i < tetrominoMatrix.length; i++) {
             for (int j = 0; j < tetrominoMatrix[i].length; j++) {
 
-                final int x = this.x + j;
-                final int y = this.y + i;
+                final int x = engine.getLockedX() + j;
+                final int y = engine.getLockedY() + i;
 
                 if (tetrominoMatrix[i][j] == 1 && y < BLOCKS_PER_COLUMN + HIDDEN_ROWS && x < BLOCKS_PER_ROW) {
-                    final Rectangle rectangle = new Rectangle();
-
-                    ChangeListener<Number> changeListener = new ChangeListener<Number>() {
-                        @Override
-                        public void changed(ObservableValue<? extends Number> observableValue, Number number, Number number2) {
-                            rectangle.setWidth(number2.doubleValue());
-                            rectangle.setHeight(number2.doubleValue());
-                            rectangle.setTranslateX(number2.doubleValue() * x);
-                            rectangle.setTranslateY(number2.doubleValue() * ((Integer) rectangle.getProperties().get("y")));
-                        }
-                    };
-                    squareSize.addListener(new WeakChangeListener<>(changeListener));
-                    rectangle.setUserData(changeListener);
-                    rectangle.getProperties().put("y", y - HIDDEN_ROWS);
-                    rectangle.setWidth(squareSize.doubleValue());
-                    rectangle.setHeight(squareSize.doubleValue());
-                    rectangle.setTranslateX(squareSize.doubleValue() * x);
-                    rectangle.setTranslateY(squareSize.doubleValue() * ((Integer) rectangle.getProperties().get("y")));
-
-                    rectangle.setFill(currentTetromino.getFill());
-                    rectangle.setEffect(currentTetromino.getLighting());
-
-                   // rectangle.setArcHeight(0);
-                    //rectangle.setArcWidth(0);
-                    // Присвоить прямоугольник с матрицей платы.
-                    matrix[y][x] = rectangle;
-                    getChildren().add(rectangle);
+                    addBlock(x, y, currentTetromino.getFill(), currentTetromino.getLighting());
                 }
             }
         }
 
-        ParallelTransition fallRowsTransition = new ParallelTransition();
-        ParallelTransition deleteRowTransition = new ParallelTransition();
+        deleteRowsTransition.getChildren().clear();
+        fallRowsTransition.getChildren().clear();
+        int clearedRows = engine.getClearedRows();
         int fall = 0;
 
-        for (int i = y + currentTetromino.getMatrix().length - 1; i >= 0; i--) {
-            if (i < matrix.length) {
-                boolean rowComplete = i >= y;
-
-                // Предположим, что строка завершена. Докажем обратное.
-                if (rowComplete) {
-                    for (int j = 0; j < matrix[i].length; j++) {
-                        if (matrix[i][j] == null) {
-                            rowComplete = false;
-                            break;
-                        }
-                    }
-                }
-                if (rowComplete) {
-                    deleteRowTransition.getChildren().add(deleteRow(i));
-                    fall++;
-                } else if (fall > 0) {
-                    fallRowsTransition.getChildren().add(fallRow(i, fall));
+        // Одна анимация на строку: устраненные мигают и пустыми переходят наверх, строки над ними падают.
+        for (int i = rows.length - 1; i >= 0; i--) {
+            if ((clearedRows & 1 << i) != 0) {
+                eliminatedRows[fall++] = rows[i];
+            } else if (fall > 0) {
+                if (rows[i].getChildren().isEmpty()) {
+                    rows[i].reset(i + fall - HIDDEN_ROWS);
+                } else {
+                    fallRowsTransition.getChildren().add(rows[i].fallTo(i + fall - HIDDEN_ROWS));
                 }
+                rows[i + fall] = rows[i];
             }
         }
+        for (int i = 0; i < fall; i++) {
+            rows[i] = eliminatedRows[i];
+            deleteRowsTransition.getChildren().add(rows[i].eliminate(i - HIDDEN_ROWS));
+            eliminatedRows[i] = null;
+        }
         final int f = fall;
 
         // Если хотя бы одна строка была устранена.
         if (f > 0) {
             notifyOnRowsEliminated(f);
         }
-        final SequentialTransition sequentialTransition = new SequentialTransition();
-        sequentialTransition.getChildren().add(deleteRowTransition);
-        sequentialTransition.getChildren().add(fallRowsTransition);
-        sequentialTransition.setOnFinished(new EventHandler<ActionEvent>() {
-            @Override
-            public void handle(ActionEvent actionEvent) {
-                //. // последовательные Transition.getChildren;
-                spawnTetromino();
-            }
-        });
         // Кэшированные узлы утечка памяти
-        getChildren().remove(currentTetromino);
+        grid.getChildren().remove(currentTetromino);
         currentTetromino = null;
-        registerPausableAnimation(sequentialTransition);
-        sequentialTransition.playFromStart();
+        clearRowsTransition.playFromStart();
     }
 
-    private Transition fallRow(final int i, final int by) {
-        ParallelTransition parallelTransition = new ParallelTransition();
-
-        if (by > 0) {
-            for (int j = 0; j < matrix[i].length; j++) {
-                final Rectangle rectangle = matrix[i][j];
-
-                if (rectangle != null) {
-                    final TranslateTransition translateTransition = new TranslateTransition(Duration.seconds(0.1), rectangle);
-                    rectangle.getProperties().put("y", i - HIDDEN_ROWS + by);
+    /**
+     * Ставит прямоугольник из пула в строку y для клетки (x, y).
+     */
+    private void addBlock(int x, int y, Paint fill, Effect lighting) {
+        rows[y].getChildren().add(blockPool.acquire(x, fill, lighting));
+    }
 
-                    translateTransition.toYProperty().bind(squareSize.multiply(i - HIDDEN_ROWS + by));
-                    translateTransition.setOnFinished(new EventHandler<ActionEvent>() {
-                        @Override
-                        public void handle(ActionEvent actionEvent) {
-                            translateTransition.toYProperty().unbind();
+    /**
+     * Очищает доску .
+     */
+    public void clear() {
+        if (replayPlayback != null) {
+            replayPlayback.pause();
+            replayPlayback = null;
+        }
+        isReplay = false;
+        stopRecording();
+        setAnimationRate(1);
+        clearView();
+    }
 
-                        }
-                    });
-                    parallelTransition.getChildren().add(translateTransition);
-                }
-                matrix[i + by][j] = rectangle;
+    /**
+     * Убирает с доски все блоки и останавливает все переходы.
+     */
+    private void clearView() {
+        // Переходы и события старой игры не должны трогать новую.
+        for (Animation animation : new ArrayList<>(runningAnimations)) {
+            animation.stop();
+        }
+        events.discard();
+        isDropping = false;
+        botPlayer.stop();
+        commandTimer.stop();
+        currentTetromino = null;
+        waitingTetrominos.clear();
+        engine.clear();
+        if (canvas != null) {
+            canvas.setTetromino(null, -1);
+            canvas.sync();
+        } else {
+            for (int i = 0; i < rows.length; i++) {
+                rows[i].reset(i - HIDDEN_ROWS);
             }
+            blockPool.releaseAll();
+            grid.getChildren().setAll(rows);
         }
-        return parallelTransition;
     }
 
     /**
-     * Удаляет строку на доске.
+     * Каталог записей, -Dtetris.recordings, по умолчанию tetris-replays во временном каталоге.
      */
-    private Transition deleteRow(int rowIndex) {
+    private static final Path RECORDINGS = Paths.get(System.getProperty("tetris.recordings",
+            System.getProperty("java.io.tmpdir") + "/tetris-replays"));
 
-        ParallelTransition parallelTransition = new ParallelTransition();
+    /**
+     * Архив законченных игр в каталоге записей, с индексом replays.tra.index рядом. Игры попадают в него пачками.
+     */
+    private static final ReplayArchiver ARCHIVER = new ReplayArchiver(RECORDINGS.resolve("replays.tra"));
 
-        for (int i = rowIndex; i >= 0; i--) {
-            for (int j = 0; j < BLOCKS_PER_ROW; j++) {
-                if (i > 1) {
-                    final Rectangle rectangle = matrix[i][j];
+    /**
+     * Запись идущей игры, null если игра не идет или запись не удалась.
+     */
+    private ReplayRecorder recorder;
 
-                    if (i == rowIndex && rectangle != null) {
-                        FadeTransition fadeTransition = new FadeTransition(Duration.seconds(.01), rectangle);
-                        fadeTransition.setToValue(0);
-                        fadeTransition.setCycleCount(3);
-                        fadeTransition.setAutoReverse(true);
-                        fadeTransition.setOnFinished(new EventHandler<ActionEvent>() {
-                            public void handle(ActionEvent actionEvent) {
-                                getChildren().remove(rectangle);
-                            }
-                        });
-                        parallelTransition.getChildren().add(fadeTransition);
-                    }
+    /**
+     * Запись последней игры, null если ее нет.
+     */
+    private ReplayRecorder recording;
 
-                }
-            }
-        }
-        return parallelTransition;
-    }
+    /**
+     * Как часто проверяется, не пора ли записать накопленные действия, пока новых нет.
+     */
+    private static final Duration RECORDING_FLUSH_CHECK = Duration.millis(ReplayRecorder.FLUSH_INTERVAL / 4e6);
 
     /**
-     * Очищает доску .
+     * Записывает накопленные действия и на паузе или без нажатий, чтобы в памяти они лежали не дольше
+     * {@link ReplayRecorder#FLUSH_INTERVAL}.
      */
-    public void clear() {
-        for (int i = 0; i < BLOCKS_PER_COLUMN + HIDDEN_ROWS; i++) {
-            for (int j = 0; j < BLOCKS_PER_ROW; j++) {
-                matrix[i][j] = null;
-            }
-        }
-        getChildren().clear();
-        getChildren().remove(currentTetromino);
-        currentTetromino = null;
-        waitingTetrominos.clear();
-    }
+    private final Timeline recordingFlush = new Timeline(new KeyFrame(RECORDING_FLUSH_CHECK,
+            new EventHandler<ActionEvent>() {
+                @Override
+                public void handle(ActionEvent actionEvent) {
+                    flushRecording();
+                }
+            }));
 
     /**
-     * Рассчитывает если Tetromino пересекались бы с доской,
-     путем пропускания матрицы, что есть в tetromino.
-     Она пересекает либо, если она попадает на другой Tetromino или если оно превышает левую, правую или нижнюю границу.
+     * Проигрывание последней записи, пока идет повтор, иначе null.
+     */
+    private ReplayPlayback replayPlayback;
 
+    /**
+     * Время повтора в наносекундах от начала игры.
+     */
+    private final ReadOnlyLongWrapper replayTime = new ReadOnlyLongWrapper();
 
-     * Правда, если пересекается с доской, в противном случае ложно.
+    /**
+     * Скорость повтора, 1 - скорость игры.
      */
-    private boolean intersectsWithBoard(final int[][] targetMatrix, int targetX, int targetY) {
-        Rectangle[][] boardMatrix = matrix;
+    private double replaySpeed = 1;
 
-        for (int i = 0; i < targetMatrix.length; i++) {
-            for (int j = 0; j < targetMatrix[i].length; j++) {
+    /**
+     * Генератор Tetromino для новых игр, равномерный, если не задан -Dtetris.randomizer=bag.
+     */
+    private static final int RANDOMIZER_ID = "bag".equals(System.getProperty("tetris.randomizer"))
+            ? Randomizer.BAG : Randomizer.UNIFORM;
 
-                boolean boardBlocks = false;
-                int x = targetX + j;
-                int y = targetY + i;
+    /**
+     * Начинает новую записываемую игру с новым зерном генератора.
+     */
+    private void startRecording() {
+        startTime = System.nanoTime();
+        long seed = new Random().nextLong();
+        engine.reset(Randomizer.create(RANDOMIZER_ID, seed));
+        Path path = RECORDINGS.resolve(String.format("replay-%d-%016x.trr", System.currentTimeMillis(), seed));
+        try {
+            recorder = ReplayRecorder.create(path, RANDOMIZER_ID, seed);
+            recording = recorder;
+            recordingFlush.playFromStart();
+        } catch (IOException e) {
+            // Игра идет и без записи.
+            System.err.println("Can't record the game: " + e);
+            recording = null;
+        }
+    }
 
-                if (x < 0 || x >= boardMatrix[i].length || y >= boardMatrix.length) {
-                    boardBlocks = true;
-                } else if (boardMatrix[y][x] != null) {
-                    boardBlocks = true;
-                }
+    /**
+     * Дописывает запись до конца и закрывает ее файл в фоновом потоке, не дожидаясь диска.
+     */
+    private void stopRecording() {
+        recordingFlush.stop();
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                System.err.println("Recording stopped: " + e);
+            }
+            recorder = null;
+        }
+    }
 
-                if (boardBlocks && targetMatrix[i][j] == 1) {
-                    return true;
-                }
+    /**
+     * Отдает накопленные действия на запись, если до следующей проверки они стали бы старше
+     * {@link ReplayRecorder#FLUSH_INTERVAL}.
+     */
+    private void flushRecording() {
+        if (recorder != null) {
+            try {
+                recorder.flushIfDue(System.nanoTime() - startTime + (long) (RECORDING_FLUSH_CHECK.toMillis() * 1e6));
+            } catch (IOException e) {
+                System.err.println("Recording stopped: " + e);
+                stopRecording();
             }
         }
-        return false;
     }
 
-    private Replay replay = new Replay();
+    /**
+     * Последняя записанная игра, пустая если ее нет.
+     */
+    private Replay readRecording() {
+        if (recording != null) {
+            try {
+                return recording.read();
+            } catch (IOException e) {
+                System.err.println("Can't read " + recording.getPath() + ": " + e);
+            }
+        }
+        return new Replay();
+    }
 
     public void start() {
+        setBot(false);
         clear();
-        startTime = System.nanoTime();
-        replay = new Replay();
-
 
         Platform.runLater(new Runnable() {
             @Override
@@ -495,143 +740,273 @@ final class Board extends StackPane {
                 requestFocus();
             }
         });
+        startRecording();
         spawnTetromino();
     }
 
     private boolean isReplay = false;
+
+    /**
+     * Проигрывает последнюю записанную игру с начала.
+     */
     public void startReplay() {
+        setBot(false);
         clear();
         isReplay = true;
-        //long startTime = System.nanoTime();
+        replayPlayback = new ReplayPlayback(this, new ReplayPlayer(readRecording()), replayTime);
+        setAnimationRate(replayPlayback.setSpeed(replaySpeed));
+        seekReplay(0);
+        replayPlayback.play();
+    }
 
+    /**
+     * Переходит к данному времени повтора в наносекундах от начала игры. Запись проигрывается без отрисовки,
+     * доска показывает только результат.
+     */
+    public void seekReplay(long time) {
+        if (replayPlayback == null) {
+            return;
+        }
+        replayPlayback.getPlayer().seek(time);
+        replayPlayback.setTime(time);
+        showReplay();
+    }
 
+    /**
+     * Показывает состояние проигрывателя без переходов.
+     */
+    void showReplay() {
+        clearView();
+        show(replayPlayback.getPlayer().getEngine());
+    }
 
+    /**
+     * Устанавливает скорость повтора от {@link ReplayPlayback#MIN_SPEED} до {@link ReplayPlayback#MAX_SPEED}.
+     * Переходы доски идут с той же скоростью.
+     */
+    public void setReplaySpeed(double speed) {
+        replaySpeed = speed;
+        if (replayPlayback != null) {
+            setAnimationRate(replayPlayback.setSpeed(speed));
+        }
+    }
 
-        Platform.runLater(new Runnable() {
-            @Override
-            public void run() {
-                requestFocus();
+    private void setAnimationRate(double rate) {
+        animationRate = rate;
+        for (Animation animation : runningAnimations) {
+            animation.setRate(rate);
+        }
+    }
+
+    public ReplayPlayer getReplayPlayer() {
+        return replayPlayback != null ? replayPlayback.getPlayer() : null;
+    }
+
+    public ReadOnlyLongProperty replayTimeProperty() {
+        return replayTime.getReadOnlyProperty();
+    }
+
+    public boolean isReplay() {
+        return isReplay;
+    }
+
+    /**
+     * Число всех узлов доски вместе с вложенными.
+     */
+    public int getNodeCount() {
+        return countNodes(this) - 1;
+    }
+
+    private static int countNodes(Node node) {
+        int count = 1;
+        if (node instanceof Parent) {
+            List<Node> children = ((Parent) node).getChildrenUnmodifiable();
+            for (int i = 0; i < children.size(); i++) {
+                count += countNodes(children.get(i));
             }
-        });
-        spawnTetromino();
+        }
+        return count;
     }
 
-    public void startBot() {
-        setBot(true);
-        clear();
+    /**
+     * Число лежащих блоков: узлов в строках или клеток на холсте.
+     */
+    public int getBlockCount() {
+        if (canvas != null) {
+            return canvas.getBlockCount();
+        }
+        int count = 0;
+        for (BlockRow row : rows) {
+            count += row.getChildren().size();
+        }
+        return count;
+    }
 
-        startTime = System.nanoTime();
-        replay = new Replay();
+    public int getRunningAnimationCount() {
+        return runningAnimations.size();
+    }
 
-        Thread thread = new Thread(new Runnable() {
-            private boolean rt = true;
-            private Random rnd = new Random();
-            @Override
-            public void run() {
-                HorizontalDirection x;
-                if((rnd.nextInt() % 5) == 1) {
-                    dropDown();
-                    run();
-                }
-                if (rnd.nextBoolean()) {
-                    x = HorizontalDirection.LEFT;
-                } else {
-                    x = HorizontalDirection.RIGHT;
+    /**
+     * Число зарегистрированных анимаций, которые ещё достижимы.
+     */
+    public int getLiveAnimationCount() {
+        return liveAnimations.size();
+    }
+
+    /**
+     * Правда, если доска может выполнить следующее действие повтора, то есть Tetromino уже появился и не падает.
+     */
+    boolean isReadyForReplay() {
+        return currentTetromino != null && !isDropping;
+    }
+
+    /**
+     * Выполняет записанное действие с обычными переходами.
+     */
+    void playReplayAction(byte action) {
+        switch (action) {
+            case Action.ROTATE:
+                rotateTetromino(HorizontalDirection.LEFT);
+                break;
+            case Action.ROTATE_RIGHT:
+                rotateTetromino(HorizontalDirection.RIGHT);
+                break;
+            case Action.MOVE_LEFT:
+                moveTetromino(HorizontalDirection.LEFT);
+                break;
+            case Action.MOVE_RIGHT:
+                moveTetromino(HorizontalDirection.RIGHT);
+                break;
+            case Action.DROP_DOWN:
+                dropTetromino();
+                break;
+            case Action.MOVE_DOWN:
+                stepTetromino();
+                break;
+        }
+    }
+
+    /**
+     * Шаг вниз из повтора. Гравитация в повторе не действует, поэтому шаг идет быстрым переходом, который
+     * не запускает следующий.
+     */
+    private void stepTetromino() {
+        if (currentTetromino == null || isDropping) {
+            return;
+        }
+        int result = engine.step();
+        if (result == GameEngine.MOVED) {
+            moveDownFastTransition.toYProperty().unbind();
+            moveDownFastTransition.setToY((engine.getY() - Board.HIDDEN_ROWS) * CELL);
+            moveDownFastTransition.playFromStart();
+        } else {
+            tetrominoDropped(result);
+        }
+    }
+
+    /**
+     * Показывает состояние другого движка без переходов. Tetromino стоит на месте.
+     */
+    private void show(GameEngine state) {
+        engine.copyFrom(state);
+        if (canvas != null) {
+            canvas.sync();
+        } else {
+            Lighting lighting = new Lighting();
+            lighting.setSurfaceScale(1);
+            for (int i = 0; i < BLOCKS_PER_COLUMN + HIDDEN_ROWS; i++) {
+                for (int j = 0; j < BLOCKS_PER_ROW; j++) {
+                    int cell = engine.getCell(i, j);
+                    if (cell != 0) {
+                        addBlock(j, i, Tetromino.colorOf(cell - 1), lighting);
+                    }
                 }
-                if (this.rt) rotate(x);
-                else move(x);
-                rt = !rt;
-                move(x);
-                try {
-                    Thread.sleep(1500);
-                } catch (InterruptedException e) {
+            }
+        }
+        if (!engine.isGameOver() && engine.getKind() >= 0) {
+            showTetromino();
+        }
+    }
 
+    /**
+     * Записывает действие, которое изменило движок.
+     */
+    private void record(byte action) {
+        if (!isReplay) {
+            if (recorder != null) {
+                try {
+                    recorder.addAction(System.nanoTime() - startTime, action);
+                } catch (IOException e) {
+                    System.err.println("Recording stopped: " + e);
+                    stopRecording();
                 }
-                run();
             }
-        });
-        thread.setDaemon(true);
-        thread.start();
+            journal.record(EventJournal.INPUT, action, 0);
+        }
+    }
+
+    public void startBot() {
+        setBot(true);
+        clear();
+
         Platform.runLater(new Runnable() {
             @Override
             public void run() {
                 requestFocus();
             }
         });
+        startRecording();
+        commandTimer.start();
         spawnTetromino();
     }
 
     /**
      * Понижает Tetromino вниз к следующей возможной позиции ..
+     *
+     * @return правда, если Tetromino был сброшен.
      */
-    public void dropDown() {
-
-        if (!isReplay) {
-            long deltatime = System.nanoTime() - startTime;
-            System.out.println("dropDown() delta = "+ deltatime);
-            replay.addAction(new Action(deltatime, Action.DROP_DOWN));
-        }
+    public boolean dropDown() {
+        return !isReplay && dropTetromino();
+    }
 
-        if (currentTetromino == null) {
-            return;
+    private boolean dropTetromino() {
+        if (currentTetromino == null || isDropping) {
+            return false;
         }
 
         moveTransition.stop();
         moveDownFastTransition.stop();
         dropDownTransition.stop();
 
-        do {
-            y++;
-        }
-        while (!intersectsWithBoard(currentTetromino.getMatrix(), x, y));
-        y--;
+        final int result = engine.hardDrop();
+        record(Action.DROP_DOWN);
         isDropping = true;
         dropDownTransition.setNode(currentTetromino);
-        dropDownTransition.toYProperty().bind(squareSize.multiply(y - Board.HIDDEN_ROWS));
+        dropDownTransition.setToY(((result == GameEngine.LOCKED ? engine.getLockedY() : engine.getY()) - Board.HIDDEN_ROWS) * CELL);
         dropDownTransition.setOnFinished(new EventHandler<ActionEvent>() {
             public void handle(ActionEvent actionEvent) {
                 isDropping = false;
-                tetrominoDropped();
+                tetrominoDropped(result);
             }
         });
-        registerPausableAnimation(dropDownTransition);
         dropDownTransition.playFromStart();
-
+        return true;
     }
 
     /**
      * Правда, если вращение было успешно, в противном случае ложной.
      */
     public boolean rotate(final HorizontalDirection direction) {
+        return !isReplay && rotateTetromino(direction);
+    }
 
-        if (!isReplay) {
-            long deltatime = System.nanoTime() - startTime;
-            System.out.println("rotate() delta = " + deltatime);
-            replay.addAction(new Action(deltatime, Action.ROTATE));
-        }
-
+    private boolean rotateTetromino(final HorizontalDirection direction) {
         boolean result = false;
-        if (currentTetromino == null) {
+        if (currentTetromino == null || isDropping) {
             result = false;
         } else {
-            int[][] matrix = currentTetromino.getMatrix();
-
-            int[][] newMatrix = new int[matrix.length][matrix.length];
-
-
-            for (int i = 0; i < matrix.length; i++) {
-                for (int j = 0; j < matrix[i].length; j++) {
-                    if (direction == HorizontalDirection.RIGHT) {
-                        newMatrix[j][matrix.length - 1 - i] = matrix[i][j];
-                    } else {
-                        newMatrix[matrix[i].length - 1 - j][i] = matrix[i][j];
-                    }
-                }
-            }
-
-            if (!intersectsWithBoard(newMatrix, x, y)) {
-                currentTetromino.setMatrix(newMatrix);
-
+            if (engine.rotate(direction == HorizontalDirection.RIGHT)) {
+                record(direction == HorizontalDirection.RIGHT ? Action.ROTATE_RIGHT : Action.ROTATE);
                 int f = direction == HorizontalDirection.RIGHT ? 1 : -1;
 
                 rotateTransition.setFromAngle(rotateTransition.getToAngle());
@@ -652,7 +1027,10 @@ final class Board extends StackPane {
                     }
                 });
                 parallelTransition.playFromStart();
+                events.post(BoardEvents.ROTATED, direction == HorizontalDirection.RIGHT ? 1 : -1);
                 result = true;
+            } else {
+                events.post(BoardEvents.INVALID_MOVE, direction == HorizontalDirection.RIGHT ? 1 : -1);
             }
         }
         return result;
@@ -663,28 +1041,22 @@ final class Board extends StackPane {
      * Правда, если движение было успешным. Ложь, если движение было заблокировано бортом
      */
     public boolean move(final HorizontalDirection direction) {
+        return !isReplay && moveTetromino(direction);
+    }
 
-        if (!isReplay) {
-            long deltatime = System.nanoTime() - startTime;
-            System.out.println("move() delta = "+ deltatime);
-            replay.addAction(new Action(deltatime, direction == HorizontalDirection.RIGHT ? Action.MOVE_RIGHT : Action.MOVE_LEFT));
-        }
-
+    private boolean moveTetromino(final HorizontalDirection direction) {
         boolean result;
         if (currentTetromino == null || isDropping) {
             result = false;
         } else {
-            int i = direction == HorizontalDirection.RIGHT ? 1 : -1;
-            x += i;
-            // Если он не движется, только проверить текущую у позицию.
-            // Если он движется, а также проверить положение цели у.
-            if (!moving && !intersectsWithBoard(currentTetromino.getMatrix(), x, y) || moving && !intersectsWithBoard(currentTetromino.getMatrix(), x, y) && !intersectsWithBoard(currentTetromino.getMatrix(), x, y + 1)) {
-                translateTransition.toXProperty().unbind();
-                translateTransition.toXProperty().bind(squareSize.multiply(x));
+            if (engine.move(direction == HorizontalDirection.RIGHT ? 1 : -1)) {
+                record(direction == HorizontalDirection.RIGHT ? Action.MOVE_RIGHT : Action.MOVE_LEFT);
+                translateTransition.setToX(engine.getX() * CELL);
                 translateTransition.playFromStart();
+                events.post(BoardEvents.MOVED, direction == HorizontalDirection.RIGHT ? 1 : -1);
                 result = true;
             } else {
-                x -= i;
+                events.post(BoardEvents.INVALID_MOVE, direction == HorizontalDirection.RIGHT ? 1 : -1);
                 result = false;
             }
         }
@@ -698,45 +1070,64 @@ final class Board extends StackPane {
         if (bot == true) {
 
         }
-        if (!isDropping && currentTetromino != null) {
+        if (!isDropping && currentTetromino != null && !isReplay) {
             moveDownFastTransition.stop();
-            moving = true;
             // Если он способен перейти к следующему у позиции, то делает это.
-            if (!intersectsWithBoard(currentTetromino.getMatrix(), x, y + 1) && !isDropping) {
-                //moveDownTransition.setFromY(moveDownTransition.getNode().getTranslateY());
+            if (engine.canMoveDown()) {
+                engine.step();
+                record(Action.MOVE_DOWN);
                 moveDownTransition.toYProperty().unbind();
-                moveDownTransition.toYProperty().bind(squareSize.multiply(y + 1 - Board.HIDDEN_ROWS));
+                moveDownTransition.setToY((engine.getY() - Board.HIDDEN_ROWS) * CELL);
                 moveTransition.playFromStart();
             } else {
-                tetrominoDropped();
+                // Записать до того, как следующий Tetromino начнет падать.
+                int result = engine.step();
+                record(Action.MOVE_DOWN);
+                tetrominoDropped(result);
             }
         }
     }
 
     /**
      * Перемещение текущего Tetromino вниз быстро, если он уже не снижается.
+     *
+     * @return правда, если Tetromino сдвинулся или лег.
      */
-    public void moveDownFast() {
-        if (!isDropping) {
-            // Остановить нормальное перемещение перехода.
-            moveTransition.stop();
-            // проверка, если следующая позиция, не пересекалась бы с полем.
-            if (!intersectsWithBoard(currentTetromino.getMatrix(), x, y + 1)) {
-                // Если он может двигаться, то перемещаем
-                moveDownFastTransition.toYProperty().unbind();
-                moveDownFastTransition.toYProperty().bind(squareSize.multiply(y + 1 - Board.HIDDEN_ROWS));
-                moveDownFastTransition.playFromStart();
-            } else {
-                // В противном случае он достиг земли.
-                tetrominoDropped();
-            }
+    public boolean moveDownFast() {
+        if (isDropping || currentTetromino == null || isReplay) {
+            return false;
         }
+        // Остановить нормальное перемещение перехода.
+        moveTransition.stop();
+        // проверка, если следующая позиция, не пересекалась бы с полем.
+        if (engine.canMoveDown()) {
+            // Если он может двигаться, то перемещаем
+            engine.step();
+            record(Action.MOVE_DOWN);
+            moveDownFastTransition.toYProperty().unbind();
+            moveDownFastTransition.setToY((engine.getY() - Board.HIDDEN_ROWS) * CELL);
+            moveDownFastTransition.playFromStart();
+        } else {
+            // В противном случае он достиг земли.
+            int result = engine.step();
+            record(Action.MOVE_DOWN);
+            tetrominoDropped(result);
+        }
+        return true;
     }
 
     /*
      * Приостановка поля.
      */
     public void pause() {
+        if (replayPlayback != null) {
+            replayPlayback.pause();
+        }
+        if (bot) {
+            // Бот продолжит с новым Tetromino или в play().
+            botPlayer.stop();
+            commandTimer.stop();
+        }
         for (Animation animation : runningAnimations) {
             if (animation.getStatus() == Animation.Status.RUNNING) {
                 animation.pause();
@@ -753,6 +1144,15 @@ final class Board extends StackPane {
                 animation.play();
             }
         }
+        if (replayPlayback != null) {
+            replayPlayback.play();
+        }
+        if (bot) {
+            commandTimer.start();
+            if (currentTetromino != null && !isDropping) {
+                playBot();
+            }
+        }
         requestFocus();
     }
 
@@ -771,51 +1171,9 @@ final class Board extends StackPane {
     }
 
     /**
-     * Добавляет слушателя к борту, который получает уведомление для определенных событий.
+     * События доски. Подписчики получают их пачкой в начале следующего кадра.
      */
-    public void addBoardListener(BoardListener boardListener) {
-        boardListeners.add(boardListener);
-    }
-
-    /**
-     * Удаляет слушатель, который ранее был добавлен
-     */
-    public void removeBoardListener(BoardListener boardListener) {
-        boardListeners.remove(boardListener);
-    }
-
-    /*
-     * Позволяет прослушивать определенные события борту.
-     */
-    public static interface BoardListener extends EventListener {
-
-
-        /*
-         * Вызывается, когда Tetromino выброшены или полная строка удаляется после того, как некоторые строки были устранены.
-         */
-        void onDropped();
-
-        /*
-         * Вызывается, когда один или несколько строк заполнены и их удаляют..
-         */
-        void onRowsEliminated(int rows);
-
-        /*
-         * Вызывается, когда игра окончена.
-         */
-        void onGameOver();
-
-        /*
-         * Вызывается, когда была сделана недействительной.
-         */
-        void onInvalidMove();
-
-       //Вызывается, когда фигура была перемещен.
-
-        void onMove(HorizontalDirection horizontalDirection);
-
-        // Вызывается, когда фигура была повернута.
-
-        void onRotate(HorizontalDirection horizontalDirection);
+    public BoardEvents getEvents() {
+        return events;
     }
 }
@@ -0,0 +1,267 @@
+package tetris;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+
+/**
+ * Draws the settled blocks, the falling tetromino and the next tetromino onto a single canvas, instead of
+ * one rectangle node per block.
+ * <p>
+ * The canvas keeps its own copy of the settled blocks, which {@link Board} updates with {@link #sync()} once
+ * its animations are done. Every pulse only the rows are redrawn which changed since the last pulse or which
+ * are covered by the falling tetromino, so the cost of a frame does not grow with the number of blocks.
+ */
+final class BoardCanvas extends Canvas {
+
+    private static final int ROWS = GameEngine.ROWS;
+
+    private static final int COLUMNS = GameEngine.COLUMNS;
+
+    private static final int HIDDEN_ROWS = GameEngine.HIDDEN_ROWS;
+
+    /**
+     * Scale of the next tetromino in the upper right corner.
+     */
+    private static final double PREVIEW_SCALE = 0.5;
+
+    private static final double PREVIEW_OPACITY = 0.6;
+
+    /**
+     * Number of visible rows covered by the preview.
+     */
+    private static final int PREVIEW_ROWS = 2;
+
+    private final GameEngine engine;
+
+    private final ReadOnlyDoubleProperty squareSize;
+
+    /**
+     * The settled blocks as they are drawn, 0 if empty, otherwise the kind plus one.
+     */
+    private final byte[][] cells = new byte[ROWS][COLUMNS];
+
+    /**
+     * Rows which have to be redrawn, bit i stands for row i.
+     */
+    private int dirtyRows;
+
+    /**
+     * One image per kind of a lit block, in the current square size.
+     */
+    private Image[] blocks;
+
+    private double blockSize;
+
+    private Tetromino tetromino;
+
+    private int nextKind = -1;
+
+    /**
+     * The rows covered by the falling tetromino in the last pulse.
+     */
+    private int tetrominoRows;
+
+    private double lastX, lastY, lastAngle;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            draw();
+        }
+    };
+
+    public BoardCanvas(GameEngine engine, ReadOnlyDoubleProperty squareSize) {
+        this.engine = engine;
+        this.squareSize = squareSize;
+
+        ChangeListener<Number> sizeListener = new ChangeListener<Number>() {
+            @Override
+            public void changed(ObservableValue<? extends Number> observableValue, Number number, Number number2) {
+                invalidate();
+            }
+        };
+        widthProperty().addListener(sizeListener);
+        heightProperty().addListener(sizeListener);
+        squareSize.addListener(sizeListener);
+
+        timer.start();
+    }
+
+    /**
+     * Sets the falling tetromino and the kind of the next one, or null and -1. The tetromino does not need to be
+     * part of the scene graph, its translation in cells of {@link Board#CELL} and its rotation are read every
+     * pulse.
+     */
+    public void setTetromino(Tetromino tetromino, int nextKind) {
+        this.tetromino = tetromino;
+        lastX = Double.NaN;
+        if (this.nextKind != nextKind) {
+            this.nextKind = nextKind;
+            dirtyRows |= previewRows();
+        }
+    }
+
+    /**
+     * Takes over the settled blocks from the engine and marks the changed rows.
+     */
+    public void sync() {
+        for (int i = 0; i < ROWS; i++) {
+            for (int j = 0; j < COLUMNS; j++) {
+                byte cell = (byte) engine.getCell(i, j);
+                if (cells[i][j] != cell) {
+                    cells[i][j] = cell;
+                    dirtyRows |= 1 << i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of settled blocks drawn.
+     */
+    public int getBlockCount() {
+        int count = 0;
+        for (byte[] row : cells) {
+            for (byte cell : row) {
+                if (cell != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Redraws everything in the next pulse.
+     */
+    public void invalidate() {
+        dirtyRows = (1 << ROWS) - 1;
+    }
+
+    private void draw() {
+        double size = squareSize.get();
+        if (size <= 0) {
+            return;
+        }
+        if (size != blockSize) {
+            blocks = BlockArtwork.blocks(size);
+            blockSize = size;
+            invalidate();
+        }
+
+        int rows = 0;
+        if (tetromino != null) {
+            double x = tetromino.getTranslateX() * size / Board.CELL;
+            double y = tetromino.getTranslateY() * size / Board.CELL;
+            double angle = tetromino.getRotate();
+            rows = coveredRows(y, tetromino.getMatrix().length, size);
+            if (x != lastX || y != lastY || angle != lastAngle) {
+                dirtyRows |= rows;
+                lastX = x;
+                lastY = y;
+                lastAngle = angle;
+            }
+        }
+        // The rows the tetromino has left.
+        dirtyRows |= tetrominoRows & ~rows;
+        tetrominoRows = rows;
+
+        if (dirtyRows == 0) {
+            return;
+        }
+        // A redrawn row is cleared first, so whatever overlaps it has to be drawn again as a whole.
+        int dirty = dirtyRows;
+        if ((dirty & previewRows()) != 0) {
+            dirty |= previewRows();
+        }
+        if ((dirty & tetrominoRows) != 0) {
+            dirty |= tetrominoRows;
+            if ((dirty & previewRows()) != 0) {
+                dirty |= previewRows();
+            }
+        }
+        dirtyRows = 0;
+
+        GraphicsContext gc = getGraphicsContext2D();
+        for (int i = HIDDEN_ROWS; i < ROWS; i++) {
+            if ((dirty & 1 << i) != 0) {
+                double top = (i - HIDDEN_ROWS) * size;
+                gc.clearRect(0, top, getWidth(), size);
+                for (int j = 0; j < COLUMNS; j++) {
+                    if (cells[i][j] != 0) {
+                        gc.drawImage(blocks[cells[i][j] - 1], j * size, top);
+                    }
+                }
+            }
+        }
+        if ((dirty & previewRows()) != 0 && nextKind >= 0) {
+            drawPreview(gc, size);
+        }
+        if (tetromino != null && (dirty & tetrominoRows) != 0) {
+            drawTetromino(gc, size);
+        }
+    }
+
+    /**
+     * Draws the blocks of the falling tetromino around the center of its matrix, where the rotation of the node
+     * happens. The blocks themselves are not turned, so their lighting stays the same.
+     */
+    private void drawTetromino(GraphicsContext gc, double size) {
+        int[][] matrix = tetromino.getMatrix();
+        Image block = blocks[tetromino.getKind()];
+        double half = matrix.length * size / 2;
+        double angle = Math.toRadians(lastAngle);
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                if (matrix[i][j] == 1) {
+                    double dx = (j + 0.5) * size - half;
+                    double dy = (i + 0.5) * size - half;
+                    double cx = lastX + half + dx * cos - dy * sin;
+                    double cy = lastY + half + dx * sin + dy * cos;
+                    gc.drawImage(block, cx - size / 2, cy - size / 2);
+                }
+            }
+        }
+    }
+
+    private void drawPreview(GraphicsContext gc, double size) {
+        int[][] matrix = TetrominoShape.SHAPES[nextKind].getMatrix();
+        double previewSize = size * PREVIEW_SCALE;
+        double left = getWidth() - (matrix.length + 1) * previewSize;
+        gc.setGlobalAlpha(PREVIEW_OPACITY);
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                if (matrix[i][j] == 1) {
+                    gc.drawImage(blocks[nextKind], left + j * previewSize, (i + 1) * previewSize, previewSize, previewSize);
+                }
+            }
+        }
+        gc.setGlobalAlpha(1);
+    }
+
+    /**
+     * The rows a matrix of the given length at the given translation covers, with one row more on each side
+     * for the corners of a rotating matrix.
+     */
+    private static int coveredRows(double translateY, int length, double size) {
+        int first = Math.max(0, (int) Math.floor(translateY / size) + HIDDEN_ROWS - 1);
+        int last = Math.min(ROWS - 1, (int) Math.ceil(translateY / size) + HIDDEN_ROWS + length);
+        int rows = 0;
+        for (int i = first; i <= last; i++) {
+            rows |= 1 << i;
+        }
+        return rows;
+    }
+
+    private static int previewRows() {
+        return ((1 << PREVIEW_ROWS) - 1) << HIDDEN_ROWS;
+    }
+}
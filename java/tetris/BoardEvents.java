@@ -0,0 +1,217 @@
+package tetris;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.Arrays;
+
+/**
+ * Delivers what happens on a {@link Board} once per frame.
+ * <p>
+ * The board posts events into a buffer. At the start of the next pulse the buffer is handed to every subscriber
+ * which is interested in at least one kind of event in it, as one {@link Batch}. So a subscriber does its work
+ * once per frame, however many rows were eliminated or inputs applied since the last one. Events of kinds nobody
+ * subscribed to are not even buffered.
+ * <p>
+ * Everything happens on the JavaFX thread.
+ */
+final class BoardEvents {
+
+    /**
+     * A tetromino was merged with the board. value: its kind.
+     */
+    static final int DROPPED = 1;
+
+    /**
+     * Complete rows were eliminated. value: their number.
+     */
+    static final int ROWS_ELIMINATED = 1 << 1;
+
+    /**
+     * The game is over. value: 0.
+     */
+    static final int GAME_OVER = 1 << 2;
+
+    /**
+     * A move or rotation was blocked. value: -1 for left, 1 for right.
+     */
+    static final int INVALID_MOVE = 1 << 3;
+
+    /**
+     * The tetromino was moved. value: -1 for left, 1 for right.
+     */
+    static final int MOVED = 1 << 4;
+
+    /**
+     * The tetromino was rotated. value: -1 for left, 1 for right.
+     */
+    static final int ROTATED = 1 << 5;
+
+    private Subscriber[] subscribers = new Subscriber[0];
+
+    private int[] subscribedKinds = new int[0];
+
+    /**
+     * The kinds at least one subscriber wants.
+     */
+    private int kinds;
+
+    private Batch pending = new Batch();
+
+    private Batch delivering = new Batch();
+
+    private boolean scheduled;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            deliver();
+        }
+    };
+
+    /**
+     * Delivers the events of the given kinds, or-ed together, to the subscriber from the next frame on.
+     */
+    public void subscribe(int kinds, Subscriber subscriber) {
+        subscribers = Arrays.copyOf(subscribers, subscribers.length + 1);
+        subscribedKinds = Arrays.copyOf(subscribedKinds, subscribedKinds.length + 1);
+        subscribers[subscribers.length - 1] = subscriber;
+        subscribedKinds[subscribedKinds.length - 1] = kinds;
+        this.kinds |= kinds;
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        for (int i = 0; i < subscribers.length; i++) {
+            if (subscribers[i] == subscriber) {
+                Subscriber[] newSubscribers = new Subscriber[subscribers.length - 1];
+                int[] newKinds = new int[subscribers.length - 1];
+                System.arraycopy(subscribers, 0, newSubscribers, 0, i);
+                System.arraycopy(subscribers, i + 1, newSubscribers, i, newSubscribers.length - i);
+                System.arraycopy(subscribedKinds, 0, newKinds, 0, i);
+                System.arraycopy(subscribedKinds, i + 1, newKinds, i, newKinds.length - i);
+                subscribers = newSubscribers;
+                subscribedKinds = newKinds;
+                kinds = 0;
+                for (int subscribed : newKinds) {
+                    kinds |= subscribed;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Buffers an event for the next frame.
+     */
+    public void post(int kind, int value) {
+        if ((kinds & kind) == 0) {
+            return;
+        }
+        pending.add(kind, value);
+        if (!scheduled) {
+            scheduled = true;
+            timer.start();
+        }
+    }
+
+    /**
+     * Forgets the events which have not been delivered yet, so those of a finished game do not reach a new one.
+     */
+    public void discard() {
+        pending.clear();
+    }
+
+    private void deliver() {
+        Batch batch = pending;
+        pending = delivering;
+        delivering = batch;
+        if (batch.size > 0) {
+            Subscriber[] subscribers = this.subscribers;
+            int[] subscribedKinds = this.subscribedKinds;
+            for (int i = 0; i < subscribers.length; i++) {
+                if ((subscribedKinds[i] & batch.kinds) != 0) {
+                    subscribers[i].onEvents(batch);
+                }
+            }
+            batch.clear();
+        }
+        // Events posted by the subscribers go into the next frame.
+        if (pending.size == 0) {
+            scheduled = false;
+            timer.stop();
+        }
+    }
+
+    /**
+     * Receives the events of one frame.
+     */
+    interface Subscriber {
+
+        /**
+         * Called at the start of a pulse with all events of the frame. The batch may also hold events of kinds the
+         * subscriber did not ask for and is only valid during the call.
+         */
+        void onEvents(Batch events);
+    }
+
+    /**
+     * The events of one frame in the order they were posted.
+     */
+    static final class Batch {
+
+        private int[] eventKinds = new int[16];
+
+        private int[] values = new int[16];
+
+        private int size;
+
+        /**
+         * All kinds in the batch, or-ed together.
+         */
+        private int kinds;
+
+        private void add(int kind, int value) {
+            if (size == eventKinds.length) {
+                eventKinds = Arrays.copyOf(eventKinds, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            eventKinds[size] = kind;
+            values[size] = value;
+            size++;
+            kinds |= kind;
+        }
+
+        private void clear() {
+            size = 0;
+            kinds = 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getKind(int i) {
+            return eventKinds[i];
+        }
+
+        public int getValue(int i) {
+            return values[i];
+        }
+
+        public boolean contains(int kind) {
+            return (kinds & kind) != 0;
+        }
+
+        /**
+         * Number of events of the given kind.
+         */
+        public int count(int kind) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (eventKinds[i] == kind) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
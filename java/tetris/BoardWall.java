@@ -0,0 +1,166 @@
+package tetris;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+
+/**
+ * Many games played by bots at once, for watching and for measuring how the game scales.
+ * <p>
+ * The games are {@link WallBoard}s, which have no nodes of their own: all of them are driven by one
+ * {@link TickScheduler} and drawn onto one canvas with the images of {@link BlockArtwork}, so a hundred boards cost
+ * one timer, one canvas and one set of block images instead of a hundred of each. After the ticks of a pulse only
+ * the boards are redrawn which changed since they were drawn last.
+ */
+final class BoardWall extends Region {
+
+    private static final int ROWS = GameEngine.ROWS;
+
+    private static final int COLUMNS = GameEngine.COLUMNS;
+
+    private static final int HIDDEN_ROWS = GameEngine.HIDDEN_ROWS;
+
+    static final int TICKS_PER_SECOND = 60;
+
+    /**
+     * Space around every board in pixels.
+     */
+    private static final double GAP = 4;
+
+    private static final Color BACKGROUND = Color.rgb(20, 20, 28);
+
+    private static final Color FIELD = Color.rgb(0, 0, 0, 0.85);
+
+    private static final Color GAME_OVER = Color.rgb(120, 0, 0, 0.5);
+
+    private final Canvas canvas = new Canvas();
+
+    private final TickScheduler scheduler = new TickScheduler(TICKS_PER_SECOND);
+
+    private final WallBoard[] boards;
+
+    /**
+     * The version of every board when it was drawn last.
+     */
+    private final int[] drawnVersions;
+
+    private final int columns;
+
+    private double cellSize;
+
+    private boolean layoutChanged = true;
+
+    /**
+     * @param count number of boards.
+     * @param seed  seed of the first game of the first board.
+     */
+    BoardWall(int count, long seed) {
+        boards = new WallBoard[count];
+        drawnVersions = new int[count];
+        columns = (int) Math.ceil(Math.sqrt(count * 2.0));
+        // The boards differ only in their state, so they can share a player and its evaluation.
+        AutoPlayer autoPlayer = new AutoPlayer(AutoPlayer.Weights.DEFAULT);
+        for (int i = 0; i < count; i++) {
+            boards[i] = new WallBoard(autoPlayer, Randomizer.BAG, seed + i, count);
+            scheduler.add(boards[i]);
+        }
+        scheduler.setOnFrame(new Runnable() {
+            @Override
+            public void run() {
+                draw();
+            }
+        });
+        getChildren().add(canvas);
+        setPrefSize(columns * (COLUMNS * 8 + GAP), rows() * ((ROWS - HIDDEN_ROWS) * 8 + GAP));
+    }
+
+    public void start() {
+        scheduler.start();
+    }
+
+    public void stop() {
+        scheduler.stop();
+    }
+
+    public TickScheduler getScheduler() {
+        return scheduler;
+    }
+
+    private int rows() {
+        return (boards.length + columns - 1) / columns;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth();
+        double height = getHeight();
+        if (canvas.getWidth() != width || canvas.getHeight() != height) {
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            cellSize = Math.max(1, Math.floor(Math.min((width / columns - GAP) / COLUMNS,
+                    (height / rows() - GAP) / (ROWS - HIDDEN_ROWS))));
+            layoutChanged = true;
+        }
+    }
+
+    private void draw() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        if (layoutChanged) {
+            gc.setFill(BACKGROUND);
+            gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            for (int i = 0; i < drawnVersions.length; i++) {
+                drawnVersions[i] = boards[i].getVersion() - 1;
+            }
+            layoutChanged = false;
+        }
+        Image[] blocks = BlockArtwork.blocks(cellSize);
+        double boardWidth = COLUMNS * cellSize;
+        double boardHeight = (ROWS - HIDDEN_ROWS) * cellSize;
+        for (int i = 0; i < boards.length; i++) {
+            WallBoard board = boards[i];
+            if (board.getVersion() == drawnVersions[i]) {
+                continue;
+            }
+            drawnVersions[i] = board.getVersion();
+            double left = GAP / 2 + (i % columns) * (boardWidth + GAP);
+            double top = GAP / 2 + (i / columns) * (boardHeight + GAP);
+            drawBoard(gc, blocks, board.getEngine(), left, top, boardWidth, boardHeight);
+        }
+    }
+
+    private void drawBoard(GraphicsContext gc, Image[] blocks, GameEngine engine, double left, double top,
+                           double width, double height) {
+        double size = cellSize;
+        gc.setFill(FIELD);
+        gc.clearRect(left, top, width, height);
+        gc.fillRect(left, top, width, height);
+        for (int i = HIDDEN_ROWS; i < ROWS; i++) {
+            for (int j = 0; j < COLUMNS; j++) {
+                int cell = engine.getCell(i, j);
+                if (cell != 0) {
+                    gc.drawImage(blocks[cell - 1], left + j * size, top + (i - HIDDEN_ROWS) * size);
+                }
+            }
+        }
+        if (engine.isGameOver()) {
+            gc.setFill(GAME_OVER);
+            gc.fillRect(left, top, width, height);
+            return;
+        }
+        int[][] matrix = engine.getMatrix();
+        if (matrix == null) {
+            return;
+        }
+        Image block = blocks[engine.getKind()];
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                int row = engine.getY() + i;
+                if (matrix[i][j] != 0 && row >= HIDDEN_ROWS) {
+                    gc.drawImage(block, left + (engine.getX() + j) * size, top + (row - HIDDEN_ROWS) * size);
+                }
+            }
+        }
+    }
+}
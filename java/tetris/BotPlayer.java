@@ -0,0 +1,122 @@
+package tetris;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays a board like a person at the keys, but from other threads.
+ * <p>
+ * For every new tetromino the board hands over a copy of its engine. The {@link AutoPlayer} chooses a placement
+ * on the shared scheduler, and the rotations, moves and the drop which lead there are put into the board's
+ * {@link CommandQueue} one by one, {@link #STEP} milliseconds apart. The board applies them on the JavaFX thread.
+ * Blocked commands are simply ignored there. The commands of every tetromino carry their own tag, so those which
+ * come too late, after it was locked, are skipped instead of moving the next one.
+ * <p>
+ * All bots share one scheduler with a thread per core, so many of them can play without a thread each.
+ */
+final class BotPlayer {
+
+    /**
+     * Milliseconds between two inputs of the bot.
+     */
+    static final long STEP = 100;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "bot-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final AutoPlayer autoPlayer;
+
+    private final CommandQueue commands;
+
+    /**
+     * Incremented for every tetromino and by {@link #stop()}. Commands and tasks of an older generation are dropped.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    BotPlayer(AutoPlayer autoPlayer, CommandQueue commands) {
+        this.autoPlayer = autoPlayer;
+        this.commands = commands;
+    }
+
+    /**
+     * The tag of the commands which are still meant for the board.
+     */
+    public int getGeneration() {
+        return generation.get() & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Drops the commands which have not been sent yet and makes those in the queue stale.
+     */
+    public void stop() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Chooses a placement for the falling tetromino of the engine and sends the inputs for it.
+     *
+     * @param engine a copy which belongs to the bot from now on.
+     */
+    public void play(final GameEngine engine) {
+        final int tag = generation.incrementAndGet() & Integer.MAX_VALUE;
+        SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (getGeneration() != tag) {
+                    return;
+                }
+                AutoPlayer.Placement placement = autoPlayer.decide(engine);
+                byte[] inputs = placement == null ? new byte[]{Action.DROP_DOWN} : inputs(engine, placement);
+                send(inputs, 0, tag);
+            }
+        }, STEP, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends one input and schedules the next one, which is a new task, not a call, so nothing piles up.
+     */
+    private void send(final byte[] inputs, final int index, final int tag) {
+        if (getGeneration() != tag) {
+            return;
+        }
+        commands.offer(tag, inputs[index]);
+        if (index + 1 < inputs.length) {
+            SCHEDULER.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    send(inputs, index + 1, tag);
+                }
+            }, STEP, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Rotations to the right, moves and the drop from where the tetromino of the engine is to the placement.
+     */
+    private static byte[] inputs(GameEngine engine, AutoPlayer.Placement placement) {
+        int rotations = (placement.rotation - engine.getRotation() + TetrominoShape.ORIENTATIONS) % TetrominoShape.ORIENTATIONS;
+        int moves = Math.abs(placement.x - engine.getX());
+        byte[] inputs = new byte[rotations + moves + 1];
+        int i = 0;
+        for (int r = 0; r < rotations; r++) {
+            inputs[i++] = Action.ROTATE_RIGHT;
+        }
+        for (int m = 0; m < moves; m++) {
+            inputs[i++] = placement.x > engine.getX() ? Action.MOVE_RIGHT : Action.MOVE_LEFT;
+        }
+        inputs[i] = Action.DROP_DOWN;
+        return inputs;
+    }
+}
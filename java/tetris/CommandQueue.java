@@ -0,0 +1,104 @@
+package tetris;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Inputs for a {@link Board} from other threads, as {@link Action} codes.
+ * <p>
+ * Any number of threads may {@link #offer(int, byte)} commands, only the thread which applies them, the JavaFX
+ * thread for a board, may take them. Producers claim a slot with a compare-and-set on the tail and publish it
+ * with an ordered store of its sequence number, so neither side locks or allocates. The queue is bounded, a
+ * producer finding it full gets false and the command is lost.
+ * <p>
+ * Every command carries a tag chosen by its producer, for example the game it belongs to, so the consumer can
+ * skip commands which are no longer meant for it.
+ */
+final class CommandQueue {
+
+    /**
+     * Returned by {@link #peek()} if the queue is empty.
+     */
+    static final long EMPTY = -1;
+
+    private final int mask;
+
+    private final long[] commands;
+
+    /**
+     * Per slot: equal to the position of a producer which may write it, position + 1 once it has been written.
+     */
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Only read and written by the consumer.
+     */
+    private long head;
+
+    /**
+     * @param capacity a power of two.
+     */
+    CommandQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+        }
+        mask = capacity - 1;
+        commands = new long[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Appends a command. May be called by any thread.
+     *
+     * @param tag a value of at least 0 which the consumer reads with {@link #tag(long)}.
+     * @return false if the queue is full.
+     */
+    public boolean offer(int tag, byte action) {
+        while (true) {
+            long position = tail.get();
+            int i = (int) position & mask;
+            long sequence = sequences.get(i);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    commands[i] = (long) tag << 8 | action & 0xFF;
+                    sequences.lazySet(i, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                // The consumer has not taken the command written here one round ago.
+                return false;
+            }
+            // Another producer took the slot, try the next one.
+        }
+    }
+
+    /**
+     * The oldest command without taking it, or {@link #EMPTY}. Only for the consumer.
+     */
+    public long peek() {
+        int i = (int) head & mask;
+        return sequences.get(i) == head + 1 ? commands[i] : EMPTY;
+    }
+
+    /**
+     * Takes the command returned by {@link #peek()}. Only for the consumer.
+     */
+    public void remove() {
+        int i = (int) head & mask;
+        sequences.lazySet(i, head + mask + 1);
+        head++;
+    }
+
+    static int tag(long command) {
+        return (int) (command >>> 8);
+    }
+
+    static byte action(long command) {
+        return (byte) command;
+    }
+}
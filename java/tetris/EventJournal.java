@@ -0,0 +1,372 @@
+package tetris;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A journal of what happens in a game: inputs, spawned and locked tetrominos, eliminated rows and the end
+ * of the game.
+ * <p>
+ * {@link #record(byte, int, int)} only writes the record into a preallocated ring buffer and publishes it
+ * with an ordered store, so it takes a few nanoseconds and never blocks the JavaFX thread. A background
+ * thread drains the buffer into a {@link Sink} and flushes it once the buffer is empty. If the buffer is full,
+ * records are dropped and counted instead of waiting for the sink.
+ * <p>
+ * There is one producer per journal, the thread which records, and one consumer, the draining thread.
+ */
+final class EventJournal {
+
+    /**
+     * An input which changed the game. a: the {@link Action} code.
+     */
+    static final byte INPUT = 0;
+
+    /**
+     * A tetromino appeared. a: its kind, b: the kind of the next one.
+     */
+    static final byte SPAWN = 1;
+
+    /**
+     * A tetromino was merged with the board. a: its kind, b: its position, see {@link #position(int, int, int)}.
+     */
+    static final byte LOCK = 2;
+
+    /**
+     * Rows were eliminated. a: their number, b: bit i stands for row i.
+     */
+    static final byte LINE_CLEAR = 3;
+
+    /**
+     * The game is over. a: the kind which could not move.
+     */
+    static final byte GAME_OVER = 4;
+
+    private static final String[] TYPE_NAMES = {"input", "spawn", "lock", "line-clear", "game-over"};
+
+    private static final int CAPACITY = 1 << 14;
+
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * How long the draining thread sleeps when it finds the buffer empty, in nanoseconds. Every time it finds it
+     * empty again it sleeps twice as long, up to {@link #MAX_IDLE_PARK}, so an idle journal hardly wakes up.
+     */
+    private static final long IDLE_PARK = 1000000;
+
+    private static final long MAX_IDLE_PARK = 100000000;
+
+    /**
+     * A journal which does not record anything.
+     */
+    static final EventJournal OFF = new EventJournal(null);
+
+    private final Sink sink;
+
+    private final long[] times;
+    private final byte[] types;
+    private final int[] as;
+    private final int[] bs;
+
+    /**
+     * Number of records published by the producer.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Number of records taken by the consumer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The last value of {@link #tail} seen by the producer, so it only reads the shared counter when the
+     * buffer looks full.
+     */
+    private long knownTail;
+
+    private volatile long dropped;
+
+    private volatile boolean closed;
+
+    private final Thread drainer;
+
+    /**
+     * Starts a journal which writes into the sink, or records nothing if the sink is null.
+     */
+    EventJournal(Sink sink) {
+        this.sink = sink;
+        if (sink == null) {
+            times = null;
+            types = null;
+            as = null;
+            bs = null;
+            drainer = null;
+            return;
+        }
+        times = new long[CAPACITY];
+        types = new byte[CAPACITY];
+        as = new int[CAPACITY];
+        bs = new int[CAPACITY];
+        drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "event-journal");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Creates the journal given by -Dtetris.journal: off (the default), discard, memory or file:path.
+     *
+     * @throws IllegalArgumentException if the value is none of these.
+     */
+    static EventJournal create(String spec) {
+        if (spec == null || spec.equals("off")) {
+            return OFF;
+        } else if (spec.equals("discard")) {
+            return new EventJournal(DISCARD);
+        } else if (spec.equals("memory")) {
+            return new EventJournal(new MemorySink(CAPACITY));
+        } else if (spec.startsWith("file:")) {
+            try {
+                return new EventJournal(new FileSink(new BufferedWriter(new FileWriter(spec.substring(5), true))));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Can't open the journal " + spec, e);
+            }
+        }
+        throw new IllegalArgumentException("Unknown journal " + spec);
+    }
+
+    public Sink getSink() {
+        return sink;
+    }
+
+    /**
+     * Records an event of the given type with the current time. Only to be called by one thread.
+     */
+    public void record(byte type, int a, int b) {
+        if (sink == null) {
+            return;
+        }
+        long h = head.get();
+        if (h - knownTail == CAPACITY) {
+            knownTail = tail.get();
+            if (h - knownTail == CAPACITY) {
+                dropped++;
+                return;
+            }
+        }
+        int i = (int) h & MASK;
+        times[i] = System.nanoTime();
+        types[i] = type;
+        as[i] = a;
+        bs[i] = b;
+        head.lazySet(h + 1);
+    }
+
+    /**
+     * Number of records dropped because the buffer was full.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Writes the remaining records, flushes the sink and stops the draining thread.
+     */
+    public void close() throws InterruptedException {
+        if (drainer != null) {
+            closed = true;
+            LockSupport.unpark(drainer);
+            drainer.join();
+        }
+    }
+
+    private void drain() {
+        long t = tail.get();
+        long park = IDLE_PARK;
+        boolean written = false;
+        try {
+            while (true) {
+                long h = head.get();
+                if (t == h) {
+                    if (written) {
+                        sink.flush();
+                        written = false;
+                    }
+                    if (closed && head.get() == t) {
+                        sink.close();
+                        return;
+                    }
+                    LockSupport.parkNanos(park);
+                    park = Math.min(park * 2, MAX_IDLE_PARK);
+                    continue;
+                }
+                for (; t < h; t++) {
+                    int i = (int) t & MASK;
+                    sink.write(times[i], types[i], as[i], bs[i]);
+                }
+                tail.lazySet(t);
+                written = true;
+                park = IDLE_PARK;
+            }
+        } catch (IOException e) {
+            // The producer keeps going, once the buffer is full its records are dropped.
+            System.err.println("Event journal stopped: " + e);
+        }
+    }
+
+    /**
+     * Packs the position of a locked tetromino into one int.
+     */
+    static int position(int x, int y, int rotation) {
+        return (x & 0xFF) | (y & 0xFF) << 8 | rotation << 16;
+    }
+
+    /**
+     * A record as one line of text.
+     */
+    static String toString(long time, byte type, int a, int b) {
+        StringBuilder line = new StringBuilder();
+        line.append(time).append(' ').append(TYPE_NAMES[type]);
+        switch (type) {
+            case INPUT:
+                line.append(" action=").append(a);
+                break;
+            case SPAWN:
+                line.append(" kind=").append(a).append(" next=").append(b);
+                break;
+            case LOCK:
+                line.append(" kind=").append(a).append(" x=").append((byte) b).append(" y=").append(b >> 8 & 0xFF)
+                        .append(" rotation=").append(b >> 16);
+                break;
+            case LINE_CLEAR:
+                line.append(" rows=").append(a).append(" mask=").append(Integer.toBinaryString(b));
+                break;
+            case GAME_OVER:
+                line.append(" kind=").append(a);
+                break;
+        }
+        return line.toString();
+    }
+
+    /**
+     * Receives the records on the draining thread.
+     */
+    interface Sink {
+
+        void write(long time, byte type, int a, int b) throws IOException;
+
+        /**
+         * Called when the buffer has been drained after records were written.
+         */
+        void flush() throws IOException;
+
+        void close() throws IOException;
+    }
+
+    /**
+     * Forgets all records. Only useful to measure the cost of journaling.
+     */
+    static final Sink DISCARD = new Sink() {
+        @Override
+        public void write(long time, byte type, int a, int b) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Writes one line of text per record.
+     */
+    static final class FileSink implements Sink {
+
+        private final Writer writer;
+
+        FileSink(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(long time, byte type, int a, int b) throws IOException {
+            writer.write(EventJournal.toString(time, type, a, b));
+            writer.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * Keeps the last records in memory.
+     */
+    static final class MemorySink implements Sink {
+
+        private final long[] times;
+        private final byte[] types;
+        private final int[] as;
+        private final int[] bs;
+
+        /**
+         * Number of records written so far, read by other threads.
+         */
+        private volatile long count;
+
+        MemorySink(int capacity) {
+            times = new long[capacity];
+            types = new byte[capacity];
+            as = new int[capacity];
+            bs = new int[capacity];
+        }
+
+        @Override
+        public void write(long time, byte type, int a, int b) {
+            int i = (int) (count % times.length);
+            times[i] = time;
+            types[i] = type;
+            as[i] = a;
+            bs[i] = b;
+            count++;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * The kept records as lines of text, oldest first. Records written meanwhile may be torn.
+         */
+        public String[] lines() {
+            long end = count;
+            long start = Math.max(0, end - times.length);
+            String[] lines = new String[(int) (end - start)];
+            for (long n = start; n < end; n++) {
+                int i = (int) (n % times.length);
+                lines[(int) (n - start)] = EventJournal.toString(times[i], types[i], as[i], bs[i]);
+            }
+            return lines;
+        }
+    }
+}
@@ -2,6 +2,7 @@
 package tetris;
 
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ReadOnlyLongProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
@@ -12,15 +13,22 @@ final class GameController {
 
     private final NotificationOverlay notificationOverlay;
 
+    private final ProfilerOverlay profilerOverlay;
+
     private final ScoreManager scoreManager;
 
+    private final InputLatency inputLatency;
+
     private final BooleanProperty paused = new SimpleBooleanProperty();
 
     public GameController() {
-        this.board = new Board();
+        // -Dtetris.renderer=nodes gives every block its own node, as before the canvas existed.
+        this.board = new Board(!"nodes".equals(System.getProperty("tetris.renderer")));
         this.scoreManager = new ScoreManager(this);
+        this.inputLatency = new InputLatency(this);
 
         notificationOverlay = new NotificationOverlay(this);
+        profilerOverlay = new ProfilerOverlay(board);
         paused.addListener(new ChangeListener<Boolean>() {
             @Override
             public void changed(ObservableValue<? extends Boolean> observableValue, Boolean aBoolean, Boolean aBoolean2) {
@@ -31,6 +39,16 @@ final class GameController {
                 }
             }
         });
+        // During a replay the score follows the replayed game, also when it jumps.
+        board.replayTimeProperty().addListener(new ChangeListener<Number>() {
+            @Override
+            public void changed(ObservableValue<? extends Number> observableValue, Number number, Number number2) {
+                ReplayPlayer player = board.getReplayPlayer();
+                if (player != null) {
+                    scoreManager.scoreProperty().set(player.getScore());
+                }
+            }
+        });
     }
 
     public BooleanProperty pausedProperty() {
@@ -38,6 +56,7 @@ final class GameController {
     }
 
     public void start() {
+        inputLatency.reset();
         board.start();
         scoreManager.scoreProperty().set(0);
         paused.set(false);
@@ -54,6 +73,39 @@ final class GameController {
         scoreManager.scoreProperty().set(0);
         paused.set(false);
     }
+
+    /**
+     * Sets the speed of replays, 1 is the speed of the game.
+     */
+    public void setReplaySpeed(double speed) {
+        board.setReplaySpeed(speed);
+    }
+
+    /**
+     * The time of the replay, in nanoseconds since the start of the game.
+     */
+    public ReadOnlyLongProperty replayTimeProperty() {
+        return board.replayTimeProperty();
+    }
+
+    /**
+     * Jumps to the given time of the replay, in nanoseconds since the start of the game.
+     */
+    public void seekReplay(long time) {
+        ReplayPlayer player = board.getReplayPlayer();
+        if (player != null) {
+            board.seekReplay(time);
+            scoreManager.scoreProperty().set(player.getScore());
+        }
+    }
+
+    /**
+     * The length of the replay in nanoseconds, 0 if no replay is shown.
+     */
+    public long getReplayDuration() {
+        ReplayPlayer player = board.getReplayPlayer();
+        return player != null ? player.getDuration() : 0;
+    }
     private void pause() {
         board.pause();
     }
@@ -78,7 +130,15 @@ final class GameController {
         return notificationOverlay;
     }
 
+    public ProfilerOverlay getProfilerOverlay() {
+        return profilerOverlay;
+    }
+
     public ScoreManager getScoreManager() {
         return scoreManager;
     }
+
+    public InputLatency getInputLatency() {
+        return inputLatency;
+    }
 }
@@ -0,0 +1,483 @@
+package tetris;
+
+import java.util.Random;
+
+/**
+ * The rules of the game without any JavaFX dependency.
+ * <p>
+ * The engine only changes state when it is told to: {@link #step()} lets gravity act once, {@link #apply(byte)}
+ * applies a player input. {@link Board} calls it from its transitions and animates the result, while bots,
+ * replays and benchmarks can drive it as fast as they like.
+ */
+final class GameEngine {
+
+    static final int HIDDEN_ROWS = 2;
+
+    static final int COLUMNS = 10;
+
+    static final int VISIBLE_ROWS = 20;
+
+    static final int ROWS = VISIBLE_ROWS + HIDDEN_ROWS;
+
+    /**
+     * Number of tetrominos which are known in advance, besides the current one.
+     */
+    static final int PREVIEW_SIZE = 3;
+
+    /**
+     * The tetromino moved one row down.
+     */
+    static final int MOVED = 0;
+
+    /**
+     * The tetromino could not move any further and was merged with the board. The next one has been spawned.
+     */
+    static final int LOCKED = 1;
+
+    /**
+     * The tetromino could not leave its spawn position, the game is over.
+     */
+    static final int GAME_OVER = 2;
+
+    /**
+     * There is no tetromino to move, because the game has not been started or is already over.
+     */
+    static final int IDLE = 3;
+
+    /**
+     * Number of wall bits left of the first column in a row mask. A piece may stand left of the board with
+     * its empty columns, so its mask is shifted by x + LEFT_WALL which must not become negative.
+     */
+    static final int LEFT_WALL = 4;
+
+    /**
+     * Number of full rows below the board, so no tetromino matrix can reach below the floor.
+     */
+    static final int FLOOR_ROWS = 4;
+
+    /**
+     * A row with all columns occupied. The walls around the columns are always set.
+     */
+    static final int FULL_ROW = -1;
+
+    /**
+     * A row without any occupied column.
+     */
+    static final int EMPTY_ROW = ~(((1 << COLUMNS) - 1) << LEFT_WALL);
+
+    /**
+     * The occupancy of the board, one mask per row with bit x + LEFT_WALL standing for column x.
+     * Below the last row there are full rows acting as the floor.
+     */
+    private final int[] rows = new int[ROWS + FLOOR_ROWS];
+
+    /**
+     * The colors of the board. 0 if a cell is empty, otherwise the kind of the tetromino which occupies it plus one.
+     * Only needed for drawing, collisions only look at {@link #rows}.
+     */
+    private final byte[][] cells = new byte[ROWS][COLUMNS];
+
+    private final int[] queue = new int[PREVIEW_SIZE];
+
+    private Randomizer randomizer;
+
+    private int kind = -1;
+
+    /**
+     * Index of the orientation of the falling tetromino.
+     */
+    private int rotation;
+
+    private TetrominoShape.Orientation orientation;
+
+    private int x, y;
+
+    private boolean gameOver;
+
+    private TetrominoShape.Orientation lockedOrientation;
+
+    private int lockedKind, lockedRotation, lockedX, lockedY;
+
+    /**
+     * Bit i is set, if row i has been eliminated by the last lock.
+     */
+    private int clearedRows;
+
+    /**
+     * An engine with uniformly distributed tetrominos from a random seed.
+     */
+    public GameEngine() {
+        this(new Randomizer.Uniform(new Random().nextLong()));
+    }
+
+    public GameEngine(Randomizer randomizer) {
+        this.randomizer = randomizer;
+    }
+
+    /**
+     * Empties the board and spawns the first tetromino. The tetrominos continue the sequence of the
+     * current randomizer.
+     */
+    public void reset() {
+        clear();
+        for (int i = 0; i < PREVIEW_SIZE; i++) {
+            queue[i] = randomizer.next();
+        }
+        spawn();
+    }
+
+    /**
+     * Starts a new game with the tetrominos of the given randomizer.
+     */
+    public void reset(Randomizer randomizer) {
+        this.randomizer = randomizer;
+        reset();
+    }
+
+    public Randomizer getRandomizer() {
+        return randomizer;
+    }
+
+    /**
+     * Empties the board without spawning a tetromino.
+     */
+    public void clear() {
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = EMPTY_ROW;
+            for (int j = 0; j < COLUMNS; j++) {
+                cells[i][j] = 0;
+            }
+        }
+        for (int i = ROWS; i < rows.length; i++) {
+            rows[i] = FULL_ROW;
+        }
+        gameOver = false;
+        clearedRows = 0;
+        kind = -1;
+        orientation = null;
+    }
+
+    private void spawn() {
+        kind = queue[0];
+        System.arraycopy(queue, 1, queue, 0, PREVIEW_SIZE - 1);
+        queue[PREVIEW_SIZE - 1] = randomizer.next();
+
+        rotation = 0;
+        orientation = TetrominoShape.SHAPES[kind].getOrientation(0);
+        x = spawnX(kind);
+        y = 0;
+    }
+
+    /**
+     * Makes this engine a copy of another one, including the state of its randomizer.
+     */
+    public void copyFrom(GameEngine other) {
+        System.arraycopy(other.rows, 0, rows, 0, rows.length);
+        for (int i = 0; i < ROWS; i++) {
+            System.arraycopy(other.cells[i], 0, cells[i], 0, COLUMNS);
+        }
+        System.arraycopy(other.queue, 0, queue, 0, PREVIEW_SIZE);
+        if (randomizer.getClass() == other.randomizer.getClass()) {
+            randomizer.copyState(other.randomizer);
+        } else {
+            randomizer = other.randomizer.copy();
+        }
+        kind = other.kind;
+        rotation = other.rotation;
+        orientation = other.orientation;
+        x = other.x;
+        y = other.y;
+        gameOver = other.gameOver;
+        clearedRows = other.clearedRows;
+    }
+
+    /**
+     * Occupies the columns of a row given as bit mask, bit j stands for column j. Used to set up positions
+     * without playing them.
+     */
+    void fillRow(int row, int columns, int kind) {
+        rows[row] |= (columns & (1 << COLUMNS) - 1) << LEFT_WALL;
+        for (int j = 0; j < COLUMNS; j++) {
+            if ((columns & 1 << j) != 0) {
+                cells[row][j] = (byte) (kind + 1);
+            }
+        }
+    }
+
+    /**
+     * The column a tetromino of the given kind spawns at: in the middle (I, O) or in the left middle
+     * (J, L, S, T, Z).
+     */
+    static int spawnX(int kind) {
+        return (COLUMNS - TetrominoShape.SHAPES[kind].getMatrix().length) / 2;
+    }
+
+    /**
+     * The points for eliminating the given number of rows at once.
+     */
+    static int points(int rows) {
+        switch (rows) {
+            case 1:
+                return 5;
+            case 2:
+                return 20;
+            case 3:
+                return 50;
+            case 4:
+                return 100;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Applies one of the {@link Action} codes.
+     *
+     * @return true, if the input changed the state of the game.
+     */
+    public boolean apply(byte action) {
+        switch (action) {
+            case Action.ROTATE:
+                return rotate(false);
+            case Action.ROTATE_RIGHT:
+                return rotate(true);
+            case Action.MOVE_LEFT:
+                return move(-1);
+            case Action.MOVE_RIGHT:
+                return move(1);
+            case Action.DROP_DOWN:
+                return hardDrop() != IDLE;
+            case Action.MOVE_DOWN:
+                return step() != IDLE;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Lets gravity act once: the tetromino moves one row down or, if it can't, it is merged with the board.
+     *
+     * @return {@link #MOVED}, {@link #LOCKED}, {@link #GAME_OVER} or {@link #IDLE}.
+     */
+    public int step() {
+        if (orientation == null || gameOver) {
+            return IDLE;
+        }
+        if (!intersects(orientation, x, y + 1)) {
+            y++;
+            return MOVED;
+        }
+        return lock();
+    }
+
+    /**
+     * Moves the tetromino down as far as possible and merges it with the board.
+     *
+     * @return {@link #LOCKED}, {@link #GAME_OVER} or {@link #IDLE}.
+     */
+    public int hardDrop() {
+        if (orientation == null || gameOver) {
+            return IDLE;
+        }
+        while (!intersects(orientation, x, y + 1)) {
+            y++;
+        }
+        return lock();
+    }
+
+    /**
+     * Moves the tetromino by dx columns.
+     *
+     * @return true, if the tetromino could be moved.
+     */
+    public boolean move(int dx) {
+        if (orientation == null || gameOver || intersects(orientation, x + dx, y)) {
+            return false;
+        }
+        x += dx;
+        return true;
+    }
+
+    /**
+     * Rotates the tetromino by 90 degrees.
+     *
+     * @return true, if the tetromino could be rotated.
+     */
+    public boolean rotate(boolean clockwise) {
+        if (orientation == null || gameOver) {
+            return false;
+        }
+        int newRotation = TetrominoShape.rotate(rotation, clockwise);
+        TetrominoShape.Orientation newOrientation = TetrominoShape.SHAPES[kind].getOrientation(newRotation);
+        if (intersects(newOrientation, x, y)) {
+            return false;
+        }
+        rotation = newRotation;
+        orientation = newOrientation;
+        return true;
+    }
+
+    /**
+     * True, if the tetromino can move one row down.
+     */
+    public boolean canMoveDown() {
+        return orientation != null && !gameOver && !intersects(orientation, x, y + 1);
+    }
+
+    private int lock() {
+        if (y == 0) {
+            // If the tetromino could not move and is still at its spawn position, the game is over.
+            gameOver = true;
+            return GAME_OVER;
+        }
+        lockedOrientation = orientation;
+        lockedKind = kind;
+        lockedRotation = rotation;
+        lockedX = x;
+        lockedY = y;
+
+        int shift = x + LEFT_WALL;
+        int[] masks = orientation.masks;
+        int[][] matrix = orientation.matrix;
+        clearedRows = 0;
+        for (int i = orientation.top; i <= orientation.bottom; i++) {
+            rows[y + i] |= masks[i] << shift;
+            for (int j = orientation.left; j <= orientation.right; j++) {
+                if (matrix[i][j] == 1) {
+                    cells[y + i][x + j] = (byte) (kind + 1);
+                }
+            }
+            // Only the rows of the tetromino can have become full.
+            if (rows[y + i] == FULL_ROW) {
+                clearedRows |= 1 << (y + i);
+            }
+        }
+
+        if (clearedRows != 0) {
+            int target = ROWS - 1;
+            for (int i = ROWS - 1; i >= 0; i--) {
+                if ((clearedRows & 1 << i) == 0) {
+                    if (target != i) {
+                        rows[target] = rows[i];
+                        System.arraycopy(cells[i], 0, cells[target], 0, COLUMNS);
+                    }
+                    target--;
+                }
+            }
+            for (int i = target; i >= 0; i--) {
+                rows[i] = EMPTY_ROW;
+                for (int j = 0; j < COLUMNS; j++) {
+                    cells[i][j] = 0;
+                }
+            }
+        }
+
+        spawn();
+        return LOCKED;
+    }
+
+    /**
+     * True, if the orientation placed at (targetX, targetY) hit another block or leave the board to the left,
+     * the right or the bottom.
+     */
+    boolean intersects(TetrominoShape.Orientation target, int targetX, int targetY) {
+        return intersects(rows, target, targetX, targetY);
+    }
+
+    /**
+     * Like {@link #intersects(TetrominoShape.Orientation, int, int)}, but on any row masks laid out like the
+     * ones of the engine, including the floor.
+     */
+    static boolean intersects(int[] rows, TetrominoShape.Orientation target, int targetX, int targetY) {
+        int shift = targetX + LEFT_WALL;
+        if (shift < 0) {
+            return true;
+        }
+        int[] masks = target.masks;
+        for (int i = target.top; i <= target.bottom; i++) {
+            if ((rows[targetY + i] & masks[i] << shift) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The kind of the falling tetromino, an index into {@link TetrominoShape#SHAPES}, or -1.
+     */
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * The kind of the i-th tetromino after the current one.
+     */
+    public int getNextKind(int i) {
+        return queue[i];
+    }
+
+    public int[][] getMatrix() {
+        return orientation.matrix;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public TetrominoShape.Orientation getOrientation() {
+        return orientation;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * The kind of the board cell plus one, or 0 if the cell is empty.
+     */
+    public int getCell(int row, int column) {
+        return cells[row][column];
+    }
+
+    /**
+     * The occupancy of a row, bit column + LEFT_WALL stands for a column. Rows from ROWS on are the floor.
+     */
+    public int getRow(int row) {
+        return rows[row];
+    }
+
+    public int[][] getLockedMatrix() {
+        return lockedOrientation.matrix;
+    }
+
+    public int getLockedRotation() {
+        return lockedRotation;
+    }
+
+    public int getLockedKind() {
+        return lockedKind;
+    }
+
+    public int getLockedX() {
+        return lockedX;
+    }
+
+    public int getLockedY() {
+        return lockedY;
+    }
+
+    /**
+     * The rows eliminated by the last lock, bit i stands for row i.
+     */
+    public int getClearedRows() {
+        return clearedRows;
+    }
+}
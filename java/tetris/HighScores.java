@@ -0,0 +1,603 @@
+package tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * The scores of all finished games, kept in a file and ranked in memory.
+ * <p>
+ * The file is a log: a header followed by records of fixed size, each with its own CRC32. A new score is appended
+ * as one record. Once the records appended since the last compaction are more than a quarter of the others, the
+ * file is compacted: written again with all records in ranking order, so loading it only has to sort the few at
+ * the end and merge them in. A record cut off or damaged by a crash ends the log.
+ * <p>
+ * In memory the scores are in a weight-balanced search tree which also knows the size of every subtree, so adding
+ * a score and finding a rank take logarithmic time. Higher scores rank first, equal scores in the order they were
+ * reached.
+ * <p>
+ * The methods may be called by any thread. The file is only read and written by a thread of the store, so adding a
+ * score does not wait for the disk. Until {@link #load(Runnable)} is done only the scores added since then are
+ * known.
+ */
+final class HighScores {
+
+    private static final byte[] MAGIC = {'T', 'S', 'C', 'R'};
+
+    private static final int VERSION = 1;
+
+    /**
+     * Magic, version, three reserved bytes, the number of records in ranking order (int) and four reserved bytes.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Time (long), score and CRC32 of both (int each).
+     */
+    private static final int RECORD_SIZE = 16;
+
+    /**
+     * The file is not compacted for fewer records at its end.
+     */
+    private static final int COMPACT_MIN = 1024;
+
+    private final Path path;
+
+    /**
+     * Runs the file work in order on one thread, which ends when there is nothing to do, so it does not keep the
+     * program alive, but lets it finish the last writes.
+     */
+    private final ThreadPoolExecutor io = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "high-scores");
+        }
+    });
+
+    /**
+     * Guarded by this.
+     */
+    private Ranking ranking = new Ranking(0);
+
+    /**
+     * The scores added before the file was loaded, guarded by this. Null after loading.
+     */
+    private List<long[]> early = new ArrayList<>();
+
+    /**
+     * Only used by the thread of the store. Null if the file could not be opened.
+     */
+    private FileChannel channel;
+
+    private int sortedRecords;
+
+    private int records;
+
+    HighScores(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Loads the file in the background, creating it if needed.
+     *
+     * @param onLoaded called by the thread of the store when the scores of the file are known, even if it could not
+     *                 be read. May be null.
+     */
+    public void load(final Runnable onLoaded) {
+        io.execute(new Runnable() {
+            @Override
+            public void run() {
+                Ranking loaded;
+                try {
+                    loaded = open();
+                } catch (IOException e) {
+                    System.err.println("Can't load the high scores from " + path + ": " + e);
+                    loaded = new Ranking(0);
+                }
+                synchronized (HighScores.this) {
+                    for (long[] entry : early) {
+                        loaded.insert((int) entry[0], entry[1]);
+                    }
+                    early = null;
+                    ranking = loaded;
+                }
+                if (onLoaded != null) {
+                    onLoaded.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds the score of a finished game. It is written to the file in the background.
+     *
+     * @param time milliseconds since the epoch when the game ended.
+     * @return the rank of the score, from 1.
+     */
+    public int add(final int score, final long time) {
+        int rank;
+        synchronized (this) {
+            rank = ranking.insert(score, time);
+            if (early != null) {
+                early.add(new long[]{score, time});
+            }
+        }
+        io.execute(new Runnable() {
+            @Override
+            public void run() {
+                append(score, time);
+            }
+        });
+        return rank;
+    }
+
+    /**
+     * The rank a game with this score would get now, from 1.
+     */
+    public synchronized int rank(int score) {
+        return ranking.rank(score);
+    }
+
+    public synchronized int size() {
+        return ranking.size();
+    }
+
+    /**
+     * The highest score, 0 if there is none.
+     */
+    public synchronized int best() {
+        return ranking.size() == 0 ? 0 : ranking.score[ranking.select(0)];
+    }
+
+    /**
+     * The best scores, best first, as pairs of score and time.
+     */
+    public synchronized long[][] top(int count) {
+        count = Math.min(count, ranking.size());
+        long[][] top = new long[count][];
+        for (int i = 0; i < count; i++) {
+            int node = ranking.select(i);
+            top[i] = new long[]{ranking.score[node], ranking.time[node]};
+        }
+        return top;
+    }
+
+    /**
+     * Waits until all scores are written and closes the file.
+     */
+    public void close() throws InterruptedException {
+        io.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        System.err.println("Can't close " + path + ": " + e);
+                    }
+                    channel = null;
+                }
+            }
+        });
+        io.shutdown();
+        io.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+
+    /**
+     * Reads the file, compacts it if needed, and opens it for appending.
+     */
+    private Ranking open() throws IOException {
+        if (!Files.exists(path)) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            write(new int[0], new long[0], 0);
+        }
+        Log log = read();
+        if (log.count - log.sorted > Math.max(COMPACT_MIN, log.sorted / 4)) {
+            write(log.scores, log.times, log.count);
+        } else if (log.length < Files.size(path)) {
+            // Appending goes on after the last intact record.
+            try (FileChannel truncated = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                truncated.truncate(log.length);
+            }
+        }
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            sortedRecords = log.sorted;
+            records = log.count;
+        }
+        return Ranking.build(log.scores, log.times, log.count);
+    }
+
+    private void append(int score, long time) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            putRecord(record, score, time);
+            record.flip();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            records++;
+            if (records - sortedRecords > Math.max(COMPACT_MIN, sortedRecords / 4)) {
+                Log log = read();
+                write(log.scores, log.times, log.count);
+            }
+        } catch (IOException e) {
+            System.err.println("Can't write the high scores to " + path + ": " + e);
+        }
+    }
+
+    /**
+     * Replaces the file with one holding the given records, which are in ranking order, and opens it for appending.
+     */
+    private void write(int[] scores, long[] times, int count) throws IOException {
+        ByteBuffer file = ByteBuffer.allocate(HEADER_SIZE + count * RECORD_SIZE);
+        file.put(MAGIC).put((byte) VERSION).putInt(8, count).position(HEADER_SIZE);
+        for (int i = 0; i < count; i++) {
+            putRecord(file, scores[i], times[i]);
+        }
+        file.flip();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (file.hasRemaining()) {
+                out.write(file);
+            }
+            out.force(false);
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        sortedRecords = count;
+        records = count;
+    }
+
+    private static void putRecord(ByteBuffer buffer, int score, long time) {
+        int start = buffer.position();
+        buffer.putLong(time).putInt(score);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start, 12);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Reads all intact records of the file, in ranking order.
+     */
+    private Log read() throws IOException {
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (file.remaining() < HEADER_SIZE || file.getInt(0) != ByteBuffer.wrap(MAGIC).getInt()) {
+            throw new IOException("Not a high score file");
+        }
+        if (file.get(MAGIC.length) != VERSION) {
+            throw new IOException("Unsupported high score file version " + file.get(MAGIC.length));
+        }
+        int available = (file.remaining() - HEADER_SIZE) / RECORD_SIZE;
+        Log log = new Log(available);
+        int sorted = Math.min(file.getInt(8), available);
+        CRC32 crc = new CRC32();
+        file.position(HEADER_SIZE);
+        while (log.count < available) {
+            int start = file.position();
+            long time = file.getLong();
+            int score = file.getInt();
+            crc.reset();
+            crc.update(file.array(), start, 12);
+            if (file.getInt() != (int) crc.getValue()) {
+                break;
+            }
+            log.scores[log.count] = score;
+            log.times[log.count] = time;
+            log.count++;
+            // Records of the sorted part which are out of order are treated like appended ones.
+            if (log.count <= sorted && log.sorted == log.count - 1 && (log.count == 1
+                    || Ranking.compare(log.scores[log.count - 2], log.times[log.count - 2], score, time) <= 0)) {
+                log.sorted = log.count;
+            }
+        }
+        log.length = HEADER_SIZE + (long) log.count * RECORD_SIZE;
+        log.sortTail();
+        return log;
+    }
+
+    /**
+     * The records of the file.
+     */
+    private static final class Log {
+
+        private final int[] scores;
+
+        private final long[] times;
+
+        private int count;
+
+        /**
+         * Number of records from the start which were in ranking order in the file.
+         */
+        private int sorted;
+
+        /**
+         * Bytes of the file up to the end of the last intact record.
+         */
+        private long length;
+
+        private Log(int capacity) {
+            scores = new int[capacity];
+            times = new long[capacity];
+        }
+
+        /**
+         * Sorts the records after the sorted part and merges them into it.
+         */
+        private void sortTail() {
+            int tail = count - sorted;
+            if (tail == 0) {
+                return;
+            }
+            int[] tailScores = new int[tail];
+            long[] tailTimes = new long[tail];
+            System.arraycopy(scores, sorted, tailScores, 0, tail);
+            System.arraycopy(times, sorted, tailTimes, 0, tail);
+            mergeSort(tailScores, tailTimes, new int[tail], new long[tail], 0, tail);
+            // Merges from the back, so the sorted part can stay where it is.
+            int i = sorted - 1;
+            int j = tail - 1;
+            for (int k = count - 1; j >= 0; k--) {
+                if (i >= 0 && Ranking.compare(scores[i], times[i], tailScores[j], tailTimes[j]) > 0) {
+                    scores[k] = scores[i];
+                    times[k] = times[i];
+                    i--;
+                } else {
+                    scores[k] = tailScores[j];
+                    times[k] = tailTimes[j];
+                    j--;
+                }
+            }
+        }
+
+        private static void mergeSort(int[] scores, long[] times, int[] scoreBuffer, long[] timeBuffer,
+                                      int from, int to) {
+            if (to - from < 2) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            mergeSort(scores, times, scoreBuffer, timeBuffer, from, middle);
+            mergeSort(scores, times, scoreBuffer, timeBuffer, middle, to);
+            System.arraycopy(scores, from, scoreBuffer, from, to - from);
+            System.arraycopy(times, from, timeBuffer, from, to - from);
+            for (int k = from, i = from, j = middle; k < to; k++) {
+                if (j >= to || i < middle && Ranking.compare(scoreBuffer[i], timeBuffer[i], scoreBuffer[j], timeBuffer[j]) <= 0) {
+                    scores[k] = scoreBuffer[i];
+                    times[k] = timeBuffer[i++];
+                } else {
+                    scores[k] = scoreBuffer[j];
+                    times[k] = timeBuffer[j++];
+                }
+            }
+        }
+    }
+
+    /**
+     * A weight-balanced search tree over arrays, which knows the size of every subtree. Adding to a subtree whose
+     * bigger child holds more than {@link #ALPHA} of it builds the subtree again perfectly balanced, which keeps its
+     * height logarithmic and costs amortized logarithmic time.
+     */
+    static final class Ranking {
+
+        private static final double ALPHA = 0.75;
+
+        private static final int NONE = -1;
+
+        private int[] score;
+
+        private long[] time;
+
+        private int[] left;
+
+        private int[] right;
+
+        private int[] size;
+
+        private int count;
+
+        private int root = NONE;
+
+        /**
+         * Nodes on the path of the last insert.
+         */
+        private int[] path = new int[64];
+
+        Ranking(int capacity) {
+            capacity = Math.max(capacity, 16);
+            score = new int[capacity];
+            time = new long[capacity];
+            left = new int[capacity];
+            right = new int[capacity];
+            size = new int[capacity];
+        }
+
+        /**
+         * A perfectly balanced tree of entries in ranking order.
+         */
+        static Ranking build(int[] scores, long[] times, int count) {
+            Ranking ranking = new Ranking(count + count / 4);
+            System.arraycopy(scores, 0, ranking.score, 0, count);
+            System.arraycopy(times, 0, ranking.time, 0, count);
+            int[] nodes = new int[count];
+            for (int i = 0; i < count; i++) {
+                nodes[i] = i;
+            }
+            ranking.count = count;
+            ranking.root = ranking.build(nodes, 0, count);
+            return ranking;
+        }
+
+        /**
+         * Negative if the first entry ranks before the second one.
+         */
+        static int compare(int score1, long time1, int score2, long time2) {
+            return score1 != score2 ? Integer.compare(score2, score1) : Long.compare(time1, time2);
+        }
+
+        int size() {
+            return count;
+        }
+
+        /**
+         * Adds an entry after all entries it does not rank before.
+         *
+         * @return its rank, from 1.
+         */
+        int insert(int newScore, long newTime) {
+            if (count == score.length) {
+                grow();
+            }
+            int node = count++;
+            score[node] = newScore;
+            time[node] = newTime;
+            left[node] = NONE;
+            right[node] = NONE;
+            size[node] = 1;
+
+            int depth = 0;
+            int rank = 1;
+            int parent = NONE;
+            boolean toLeft = false;
+            for (int current = root; current != NONE; ) {
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                }
+                path[depth++] = current;
+                size[current]++;
+                parent = current;
+                toLeft = compare(newScore, newTime, score[current], time[current]) < 0;
+                if (toLeft) {
+                    current = left[current];
+                } else {
+                    rank += sizeOf(left[current]) + 1;
+                    current = right[current];
+                }
+            }
+            if (parent == NONE) {
+                root = node;
+            } else if (toLeft) {
+                left[parent] = node;
+            } else {
+                right[parent] = node;
+            }
+
+            // Rebuilding the highest unbalanced subtree also balances everything below it.
+            for (int i = 0; i < depth; i++) {
+                int top = path[i];
+                if (Math.max(sizeOf(left[top]), sizeOf(right[top])) > ALPHA * size[top] && size[top] > 2) {
+                    int[] nodes = new int[size[top]];
+                    collect(top, nodes, 0);
+                    int rebuilt = build(nodes, 0, nodes.length);
+                    if (i == 0) {
+                        root = rebuilt;
+                    } else if (left[path[i - 1]] == top) {
+                        left[path[i - 1]] = rebuilt;
+                    } else {
+                        right[path[i - 1]] = rebuilt;
+                    }
+                    break;
+                }
+            }
+            return rank;
+        }
+
+        /**
+         * The rank an entry with this score would get, from 1: the number of higher scores plus one.
+         */
+        int rank(int newScore) {
+            int rank = 1;
+            for (int current = root; current != NONE; ) {
+                if (score[current] > newScore) {
+                    rank += sizeOf(left[current]) + 1;
+                    current = right[current];
+                } else {
+                    current = left[current];
+                }
+            }
+            return rank;
+        }
+
+        /**
+         * The node at the given position in ranking order, from 0.
+         */
+        int select(int position) {
+            int current = root;
+            while (true) {
+                int leftSize = sizeOf(left[current]);
+                if (position < leftSize) {
+                    current = left[current];
+                } else if (position == leftSize) {
+                    return current;
+                } else {
+                    position -= leftSize + 1;
+                    current = right[current];
+                }
+            }
+        }
+
+        private int sizeOf(int node) {
+            return node == NONE ? 0 : size[node];
+        }
+
+        /**
+         * Writes the nodes of the subtree in order into the array.
+         *
+         * @return the next index of the array.
+         */
+        private int collect(int node, int[] nodes, int index) {
+            while (node != NONE) {
+                index = collect(left[node], nodes, index);
+                nodes[index++] = node;
+                node = right[node];
+            }
+            return index;
+        }
+
+        /**
+         * Links the nodes, which are in order, to a balanced subtree.
+         *
+         * @return its root.
+         */
+        private int build(int[] nodes, int from, int to) {
+            if (from == to) {
+                return NONE;
+            }
+            int middle = (from + to) >>> 1;
+            int node = nodes[middle];
+            left[node] = build(nodes, from, middle);
+            right[node] = build(nodes, middle + 1, to);
+            size[node] = to - from;
+            return node;
+        }
+
+        private void grow() {
+            int capacity = score.length * 2;
+            score = Arrays.copyOf(score, capacity);
+            time = Arrays.copyOf(time, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            size = Arrays.copyOf(size, capacity);
+        }
+    }
+}
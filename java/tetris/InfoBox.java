@@ -1,20 +1,36 @@
 
 package tetris;
 
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.beans.binding.Bindings;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.collections.FXCollections;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
 import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+import javafx.util.StringConverter;
 
 import java.util.concurrent.Callable;
 
 
 
 final class InfoBox extends VBox {
+
+    /**
+     * True while the slider is moved with the replay, so it does not seek.
+     */
+    private boolean followingReplay;
+
     public InfoBox(final GameController gameController) {
         setPadding(new Insets(200, 20, 20, 20));
         setSpacing(10);
@@ -22,10 +38,53 @@ final class InfoBox extends VBox {
         setId("infoBox");
 
 
+        // Position in the replay in milliseconds, only enabled while a replay is shown.
+        final Slider sldReplay = new Slider();
+        sldReplay.setDisable(true);
+        sldReplay.valueProperty().addListener(new ChangeListener<Number>() {
+            @Override
+            public void changed(ObservableValue<? extends Number> observableValue, Number number, Number number2) {
+                if (!sldReplay.isDisabled() && !followingReplay) {
+                    gameController.seekReplay(number2.longValue() * 1000000);
+                }
+            }
+        });
+        gameController.replayTimeProperty().addListener(new ChangeListener<Number>() {
+            @Override
+            public void changed(ObservableValue<? extends Number> observableValue, Number number, Number number2) {
+                followingReplay = true;
+                sldReplay.setValue(number2.longValue() / 1000000);
+                followingReplay = false;
+            }
+        });
+
+        final ChoiceBox<Double> cbSpeed = new ChoiceBox<>(FXCollections.observableArrayList(
+                0.25, 0.5, 1.0, 2.0, 4.0, 8.0, 16.0, 32.0, 64.0));
+        cbSpeed.setConverter(new StringConverter<Double>() {
+            @Override
+            public String toString(Double speed) {
+                return (speed == Math.floor(speed) ? String.valueOf(speed.intValue()) : String.valueOf(speed)) + "x";
+            }
+
+            @Override
+            public Double fromString(String string) {
+                return Double.valueOf(string.substring(0, string.length() - 1));
+            }
+        });
+        cbSpeed.setValue(1.0);
+        cbSpeed.valueProperty().addListener(new ChangeListener<Double>() {
+            @Override
+            public void changed(ObservableValue<? extends Double> observableValue, Double aDouble, Double aDouble2) {
+                gameController.setReplaySpeed(aDouble2);
+            }
+        });
+        cbSpeed.setMaxWidth(Double.MAX_VALUE);
+
         Button btnStart = new Button("New Game");
         btnStart.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent actionEvent) {
+                sldReplay.setDisable(true);
                 gameController.start();
             }
         });
@@ -34,6 +93,7 @@ final class InfoBox extends VBox {
         btnBot.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent event) {
+                sldReplay.setDisable(true);
                 gameController.startBot();
             }
         });
@@ -41,7 +101,11 @@ final class InfoBox extends VBox {
         btnReplay.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent actionEvent) {
+                sldReplay.setDisable(true);
                 gameController.startReplay();
+                sldReplay.setMax(gameController.getReplayDuration() / 1000000);
+                sldReplay.setValue(0);
+                sldReplay.setDisable(false);
             }
         });
 
@@ -49,6 +113,7 @@ final class InfoBox extends VBox {
         btnStop.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent actionEvent) {
+                sldReplay.setDisable(true);
                 gameController.stop();
             }
         });
@@ -90,6 +155,8 @@ final class InfoBox extends VBox {
         getChildren().add(btnPause);
         getChildren().add(btnStop);
         getChildren().add(btnReplay);
+        getChildren().add(sldReplay);
+        getChildren().add(cbSpeed);
 
 
         Label lblInfo = new Label("Score:");
@@ -98,6 +165,57 @@ final class InfoBox extends VBox {
 
         getChildren().addAll(lblPoints);
 
+        // The best score so far and the rank of the last game among all.
+        final ScoreManager scoreManager = gameController.getScoreManager();
+        Label lblBest = new Label();
+        lblBest.textProperty().bind(Bindings.createStringBinding(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                String text = "Best: " + scoreManager.bestProperty().get();
+                if (scoreManager.rankProperty().get() > 0) {
+                    text += "\nLast game: #" + scoreManager.rankProperty().get() + " of " + scoreManager.getHighScores().size();
+                }
+                return text;
+            }
+        }, scoreManager.bestProperty(), scoreManager.rankProperty()));
+        getChildren().add(lblBest);
+
+        // Debug panel with the percentiles of the input latency, refreshed every second while it is shown.
+        final Label lblLatency = new Label();
+        lblLatency.getStyleClass().add("latency");
+        lblLatency.setVisible(false);
+        lblLatency.managedProperty().bind(lblLatency.visibleProperty());
+        final Timeline latencyTimeline = new Timeline(new KeyFrame(Duration.seconds(1), new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent actionEvent) {
+                lblLatency.setText(gameController.getInputLatency().report());
+            }
+        }));
+        latencyTimeline.setCycleCount(Timeline.INDEFINITE);
+
+        CheckBox cbLatency = new CheckBox("Latency");
+        cbLatency.setFocusTraversable(false);
+        cbLatency.selectedProperty().addListener(new ChangeListener<Boolean>() {
+            @Override
+            public void changed(ObservableValue<? extends Boolean> observableValue, Boolean aBoolean, Boolean aBoolean2) {
+                lblLatency.setVisible(aBoolean2);
+                if (aBoolean2) {
+                    lblLatency.setText(gameController.getInputLatency().report());
+                    latencyTimeline.play();
+                } else {
+                    latencyTimeline.stop();
+                }
+            }
+        });
+
+        getChildren().add(cbLatency);
+        getChildren().add(lblLatency);
+
+        CheckBox cbProfiler = new CheckBox("Profiler");
+        cbProfiler.setFocusTraversable(false);
+        gameController.getProfilerOverlay().visibleProperty().bind(cbProfiler.selectedProperty());
+        getChildren().add(cbProfiler);
+
 
     }
 }
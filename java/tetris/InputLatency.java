@@ -0,0 +1,184 @@
+package tetris;
+
+import javafx.animation.AnimationTimer;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Measures how long it takes from a key press until the board shows its result.
+ * <p>
+ * Every key press handled by {@link Tetris} passes through four points in time: the key handler starts, the
+ * {@link Board} has applied the input, the next pulse starts the animations which show it, and the pulse after
+ * that, which JavaFX only starts once the frame of the previous one has been rendered. The time between each
+ * two of them and the total go into one {@link LatencyHistogram} each.
+ * <p>
+ * When a game played by hand is over the percentiles are written to the file given by -Dtetris.latency.file, by
+ * default tetris-latency.txt in the temporary directory.
+ */
+final class InputLatency implements BoardEvents.Subscriber {
+
+    static final String[] STAGES = {"key -> board", "board -> pulse", "pulse -> frame", "key -> frame"};
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99.9"};
+
+    /**
+     * Key presses handled before the next pulse which are measured, more are only counted as the last one.
+     */
+    private static final int MAX_PENDING = 16;
+
+    /**
+     * Writes the reports one after the other, without holding up the JavaFX thread.
+     */
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "latency-report");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Board board;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+
+    private final long[] keyTimes = new long[MAX_PENDING];
+
+    private final long[] boardTimes = new long[MAX_PENDING];
+
+    private int pending;
+
+    /**
+     * The start of the first pulse after the pending key presses, or 0 if it has not come yet.
+     */
+    private long pulseTime;
+
+    private final String file = System.getProperty("tetris.latency.file",
+            System.getProperty("java.io.tmpdir") + "/tetris-latency.txt");
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            pulse(System.nanoTime());
+        }
+    };
+
+    public InputLatency(GameController gameController) {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        board = gameController.getBoard();
+        board.getEvents().subscribe(BoardEvents.GAME_OVER, this);
+    }
+
+    /**
+     * Called by the key handler after the board has applied the input.
+     *
+     * @param keyTime {@link System#nanoTime()} at the start of the key handler.
+     */
+    public void keyHandled(long keyTime) {
+        long boardTime = System.nanoTime();
+        int i = Math.min(pending, MAX_PENDING - 1);
+        keyTimes[i] = keyTime;
+        boardTimes[i] = boardTime;
+        pending = i + 1;
+        timer.start();
+    }
+
+    private void pulse(long time) {
+        if (pulseTime == 0) {
+            pulseTime = time;
+            return;
+        }
+        // The frame of the previous pulse is on the screen. It shows only the key presses handled before that
+        // pulse, the later ones wait for the frame of this pulse.
+        int later = 0;
+        for (int i = 0; i < pending; i++) {
+            if (boardTimes[i] > pulseTime) {
+                keyTimes[later] = keyTimes[i];
+                boardTimes[later] = boardTimes[i];
+                later++;
+                continue;
+            }
+            histograms[0].record(boardTimes[i] - keyTimes[i]);
+            histograms[1].record(pulseTime - boardTimes[i]);
+            histograms[2].record(time - pulseTime);
+            histograms[3].record(time - keyTimes[i]);
+        }
+        pending = later;
+        if (pending > 0) {
+            pulseTime = time;
+        } else {
+            pulseTime = 0;
+            timer.stop();
+        }
+    }
+
+    public LatencyHistogram getHistogram(int stage) {
+        return histograms[stage];
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * The percentiles of all stages in milliseconds, one line per stage.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%-15s %6s", "ms", "count"));
+        for (String name : PERCENTILE_NAMES) {
+            report.append(String.format(Locale.ROOT, " %7s", name));
+        }
+        report.append(String.format(Locale.ROOT, " %7s%n", "max"));
+        for (int i = 0; i < STAGES.length; i++) {
+            LatencyHistogram histogram = histograms[i];
+            report.append(String.format(Locale.ROOT, "%-15s %6d", STAGES[i], histogram.getCount()));
+            for (double percentile : PERCENTILES) {
+                report.append(String.format(Locale.ROOT, " %7.2f", histogram.getValueAtPercentile(percentile) / 1e6));
+            }
+            report.append(String.format(Locale.ROOT, " %7.2f%n", histogram.getMax() / 1e6));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void onEvents(BoardEvents.Batch events) {
+        // The bot presses no keys, its games would only write the report of the last game again.
+        if (events.contains(BoardEvents.GAME_OVER) && !board.isBot()) {
+            writeReport();
+        }
+    }
+
+    /**
+     * Writes the report to the file, if a key press has been measured.
+     */
+    void writeReport() {
+        if (histograms[3].getCount() == 0) {
+            return;
+        }
+        // The report is made here, the file is written by the writing thread.
+        final String report = report();
+        WRITER.execute(new Runnable() {
+            @Override
+            public void run() {
+                try (Writer out = new FileWriter(file)) {
+                    out.write(report);
+                } catch (IOException e) {
+                    System.err.println("Can't write " + file + ": " + e);
+                }
+            }
+        });
+    }
+}
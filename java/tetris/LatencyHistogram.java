@@ -0,0 +1,94 @@
+package tetris;
+
+import java.util.Arrays;
+
+/**
+ * Counts nanosecond latencies in buckets with a fixed relative precision, like HdrHistogram.
+ * <p>
+ * Values below 2 * {@link #SUB_BUCKETS} have a bucket each. Above, every power of two is split into
+ * {@link #SUB_BUCKETS} buckets, so a value is known within about 3 %. The buckets reach up to
+ * {@link #MAX_VALUE} and are allocated once, recording is an array increment.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The largest value which is told apart, about two minutes. Larger values count as this one.
+     */
+    static final long MAX_VALUE = (1L << 37) - 1;
+
+    private final long[] counts = new long[index(MAX_VALUE) + 1];
+
+    private long count;
+
+    private long max;
+
+    private long sum;
+
+    public void record(long value) {
+        value = Math.max(0, Math.min(value, MAX_VALUE));
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        max = 0;
+        sum = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * The smallest value which at least the given percentage of the recorded values does not exceed, rounded up
+     * to the end of its bucket. 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * The bucket of a value: the value itself below 2 * SUB_BUCKETS, otherwise the value shifted into
+     * [SUB_BUCKETS, 2 * SUB_BUCKETS) plus SUB_BUCKETS per shifted bit.
+     */
+    private static int index(long value) {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1);
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index - shift * SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
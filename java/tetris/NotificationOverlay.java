@@ -8,21 +8,23 @@ import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
-import javafx.geometry.HorizontalDirection;
 import javafx.scene.control.Label;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.util.Duration;
 
 
-final class NotificationOverlay extends StackPane implements Board.BoardListener {
+/**
+ * Shows the points of eliminated rows and the end of the game above the board.
+ */
+final class NotificationOverlay extends StackPane implements BoardEvents.Subscriber {
 
     public NotificationOverlay(GameController gameController) {
-        gameController.getBoard().addBoardListener(this);
+        gameController.getBoard().getEvents().subscribe(BoardEvents.GAME_OVER, this);
         gameController.getScoreManager().scoreProperty().addListener(new ChangeListener<Number>() {
             @Override
             public void changed(ObservableValue<? extends Number> observableValue, Number number, Number number2) {
-                if (number2.doubleValue() != 0) {
+                if (number2.intValue() > number.intValue()) {
                     showPoints(number2.intValue() - number.intValue());
                 }
             }
@@ -86,28 +88,9 @@ final class NotificationOverlay extends StackPane implements Board.BoardListener
     }
 
     @Override
-    public void onDropped() {
-    }
-
-    @Override
-    public void onRowsEliminated(int rows) {
-
-    }
-
-    @Override
-    public void onGameOver() {
-        showGameOver();
-    }
-
-    @Override
-    public void onInvalidMove() {
-    }
-
-    @Override
-    public void onMove(HorizontalDirection horizontalDirection) {
-    }
-
-    @Override
-    public void onRotate(HorizontalDirection horizontalDirection) {
+    public void onEvents(BoardEvents.Batch events) {
+        if (events.contains(BoardEvents.GAME_OVER)) {
+            showGameOver();
+        }
     }
 }
@@ -0,0 +1,169 @@
+package tetris;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * Shows what a frame costs and what the board holds on to: the time between pulses, dropped frames, all nodes
+ * of the {@link Board} and the settled blocks it draws, its running and still reachable animations and the
+ * allocation rate of the JavaFX thread.
+ * <p>
+ * While visible, every pulse only stores the time since the last one in a ring buffer. The overlay is redrawn
+ * four times per second, so the strings it draws are not allocated per frame.
+ */
+final class ProfilerOverlay extends Canvas {
+
+    private static final double WIDTH = 260;
+
+    private static final double HEIGHT = 150;
+
+    /**
+     * Number of pulses shown in the graph.
+     */
+    private static final int SAMPLES = 120;
+
+    /**
+     * The time between two pulses at 60 frames per second, the rate JavaFX aims at.
+     */
+    private static final long FRAME = 1000000000L / 60;
+
+    private static final long REDRAW_INTERVAL = 250000000L;
+
+    private static final double GRAPH_HEIGHT = 40;
+
+    private final Board board;
+
+    /**
+     * Nanoseconds between the pulses, the newest at {@link #sample} - 1.
+     */
+    private final long[] frameTimes = new long[SAMPLES];
+
+    private int sample;
+
+    /**
+     * Number of frame times stored, at most {@link #SAMPLES}.
+     */
+    private int sampleCount;
+
+    private long lastPulse;
+
+    private long droppedFrames;
+
+    private long lastRedraw;
+
+    /**
+     * The bean which reports allocated bytes per thread, or null if the JVM does not have it.
+     */
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    private long fxThread;
+
+    private long lastAllocated = -1;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            pulse(now);
+        }
+    };
+
+    public ProfilerOverlay(Board board) {
+        super(WIDTH, HEIGHT);
+        this.board = board;
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        threadBean = bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) bean : null;
+
+        setMouseTransparent(true);
+        setVisible(false);
+        visibleProperty().addListener(new ChangeListener<Boolean>() {
+            @Override
+            public void changed(ObservableValue<? extends Boolean> observableValue, Boolean aBoolean, Boolean aBoolean2) {
+                if (aBoolean2) {
+                    lastPulse = 0;
+                    lastAllocated = -1;
+                    timer.start();
+                } else {
+                    timer.stop();
+                }
+            }
+        });
+    }
+
+    private void pulse(long now) {
+        if (lastPulse != 0) {
+            long frameTime = now - lastPulse;
+            frameTimes[sample] = frameTime;
+            sample = (sample + 1) % SAMPLES;
+            sampleCount = Math.min(sampleCount + 1, SAMPLES);
+            if (frameTime > FRAME * 3 / 2) {
+                droppedFrames += (frameTime + FRAME / 2) / FRAME - 1;
+            }
+        }
+        lastPulse = now;
+        if (now - lastRedraw >= REDRAW_INTERVAL) {
+            redraw(now);
+        }
+    }
+
+    private void redraw(long now) {
+        double seconds = (now - lastRedraw) / 1e9;
+        lastRedraw = now;
+
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, WIDTH, HEIGHT);
+        gc.setFill(Color.rgb(0, 0, 0, 0.7));
+        gc.fillRect(0, 0, WIDTH, HEIGHT);
+
+        // One bar per pulse, the line marks 60 frames per second.
+        double barWidth = WIDTH / SAMPLES;
+        long max = 0;
+        long sum = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            long frameTime = frameTimes[(sample + i) % SAMPLES];
+            max = Math.max(max, frameTime);
+            sum += frameTime;
+            double height = Math.min(GRAPH_HEIGHT, GRAPH_HEIGHT * frameTime / (3.0 * FRAME));
+            gc.setFill(frameTime > FRAME * 3 / 2 ? Color.ORANGERED : Color.LIMEGREEN);
+            gc.fillRect(i * barWidth, GRAPH_HEIGHT - height, barWidth, height);
+        }
+        gc.setStroke(Color.WHITE);
+        gc.strokeLine(0, GRAPH_HEIGHT * 2 / 3, WIDTH, GRAPH_HEIGHT * 2 / 3);
+
+        gc.setFill(Color.WHITE);
+        double y = GRAPH_HEIGHT + 18;
+        gc.fillText(String.format(Locale.ROOT, "frame %.1f ms avg, %.1f ms max",
+                sum / 1e6 / Math.max(sampleCount, 1), max / 1e6), 6, y);
+        gc.fillText("dropped frames " + droppedFrames, 6, y += 18);
+        gc.fillText("board nodes " + board.getNodeCount() + ", blocks " + board.getBlockCount(), 6, y += 18);
+        gc.fillText("animations " + board.getRunningAnimationCount() + " running, "
+                + board.getLiveAnimationCount() + " reachable", 6, y += 18);
+        gc.fillText("allocated " + allocationRate(seconds), 6, y += 18);
+    }
+
+    /**
+     * The bytes allocated by the JavaFX thread since the last call, per second.
+     */
+    private String allocationRate(double seconds) {
+        if (threadBean == null) {
+            return "n/a";
+        }
+        if (fxThread == 0) {
+            fxThread = Thread.currentThread().getId();
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(fxThread);
+        String rate = lastAllocated < 0 ? "-"
+                : String.format(Locale.ROOT, "%.2f MB/s", (allocated - lastAllocated) / seconds / 1e6);
+        lastAllocated = allocated;
+        return rate;
+    }
+}
@@ -0,0 +1,140 @@
+package tetris;
+
+/**
+ * Chooses the kinds of the tetrominos of one game. The whole sequence follows from the id of the generator and
+ * its seed, so a replay only needs to store these two.
+ */
+abstract class Randomizer {
+
+    /**
+     * Every kind with the same probability, independent of the previous ones.
+     */
+    static final int UNIFORM = 0;
+
+    /**
+     * All seven kinds in a shuffled order, then again all seven in another order, and so on.
+     */
+    static final int BAG = 1;
+
+    private final long seed;
+
+    /**
+     * State of the SplitMix64 generator.
+     */
+    private long state;
+
+    Randomizer(long seed) {
+        this.seed = seed;
+        this.state = seed;
+    }
+
+    /**
+     * Creates the generator with the given id.
+     *
+     * @throws IllegalArgumentException if there is no generator with this id.
+     */
+    static Randomizer create(int id, long seed) {
+        switch (id) {
+            case UNIFORM:
+                return new Uniform(seed);
+            case BAG:
+                return new Bag(seed);
+            default:
+                throw new IllegalArgumentException("Unknown randomizer " + id);
+        }
+    }
+
+    /**
+     * The kind of the next tetromino, an index into {@link TetrominoShape#SHAPES}.
+     */
+    abstract int next();
+
+    abstract int getId();
+
+    long getSeed() {
+        return seed;
+    }
+
+    /**
+     * A generator of the same kind in the same state, which continues with the same sequence.
+     */
+    Randomizer copy() {
+        Randomizer copy = create(getId(), seed);
+        copy.copyState(this);
+        return copy;
+    }
+
+    void copyState(Randomizer other) {
+        state = other.state;
+    }
+
+    /**
+     * A number from 0 (inclusive) to bound (exclusive).
+     */
+    final int nextInt(int bound) {
+        long z = state += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int) (((z >>> 32) * bound) >>> 32);
+    }
+
+    static final class Uniform extends Randomizer {
+
+        Uniform(long seed) {
+            super(seed);
+        }
+
+        @Override
+        int next() {
+            return nextInt(TetrominoShape.SHAPES.length);
+        }
+
+        @Override
+        int getId() {
+            return UNIFORM;
+        }
+    }
+
+    static final class Bag extends Randomizer {
+
+        private final int[] bag = new int[TetrominoShape.SHAPES.length];
+
+        /**
+         * Number of kinds left in the bag.
+         */
+        private int left;
+
+        Bag(long seed) {
+            super(seed);
+        }
+
+        @Override
+        int next() {
+            if (left == 0) {
+                for (int i = 0; i < bag.length; i++) {
+                    bag[i] = i;
+                }
+                left = bag.length;
+            }
+            // Take a random one of the kinds left and fill its place with the last one.
+            int i = nextInt(left);
+            int kind = bag[i];
+            bag[i] = bag[--left];
+            return kind;
+        }
+
+        @Override
+        int getId() {
+            return BAG;
+        }
+
+        @Override
+        void copyState(Randomizer other) {
+            super.copyState(other);
+            Bag bag = (Bag) other;
+            System.arraycopy(bag.bag, 0, this.bag, 0, this.bag.length);
+            left = bag.left;
+        }
+    }
+}
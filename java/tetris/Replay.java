@@ -1,34 +1,367 @@
 package tetris;
 
-import java.io.Serializable;
-import java.util.ArrayList;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * Created by Дима on 06.06.2016.
  */
 
-public class Replay implements Serializable {
-    ArrayList<Action> actions = new ArrayList<>();
-    ArrayList<Integer> tetrominos = new ArrayList<>();
+public class Replay {
 
-    transient private int nextActionIndx = 0;
-    transient private int nextTetrminoIndx = 0;
+    /**
+     * The binary format starts with these bytes, followed by the version.
+     */
+    private static final byte[] MAGIC = {'T', 'R', 'P', 'L'};
 
-    public void addAction(Action action) { actions.add(action); }
-    public void addTetromino(int number) {tetrominos.add(number);}
+    /**
+     * Version 2 added the randomizer id and seed after the version.
+     */
+    private static final int VERSION = 2;
 
-    public boolean hasNextAction() {return nextActionIndx < actions.size();}
-    public Action getNextAction(){return actions.get(nextActionIndx++);}
+    /**
+     * Bits of the first byte of an action holding the action code.
+     */
+    private static final int OPCODE_BITS = 3;
 
-    public boolean hasNextTetromino() {return nextTetrminoIndx < tetrominos.size();}
-    public int getNextTetrmino() {return tetrominos.get(nextTetrminoIndx++);}
+    /**
+     * Bits of the first byte of an action holding the lowest bits of the time delta. The remaining
+     * bit says if more bits of the delta follow as varint.
+     */
+    private static final int DELTA_BITS = 4;
+
+    /**
+     * Nanoseconds per stored time unit. Times are saved in milliseconds, which is finer than a frame.
+     */
+    static final long TIME_UNIT = 1000000;
+
+    /**
+     * Bits per tetromino kind.
+     */
+    private static final int TETROMINO_BITS = 3;
+
+    private long[] times = new long[64];
+    private byte[] actions = new byte[64];
+    private int actionCount = 0;
+
+    private byte[] tetrominos = new byte[64];
+    private int tetrominoCount = 0;
+
+    private int nextActionIndx = 0;
+    private int nextTetrminoIndx = 0;
+
+    /**
+     * The randomizer of the game, from which all its tetrominos follow.
+     */
+    private int randomizerId = Randomizer.UNIFORM;
+    private long seed;
+
+    public void addAction(Action action) { addAction(action.getTime(), action.getAction()); }
+
+    /**
+     * Records an action at the given nanoseconds since the start of the game.
+     */
+    public void addAction(long time, byte action) {
+        if (actionCount == actions.length) {
+            times = Arrays.copyOf(times, actionCount * 2);
+            actions = Arrays.copyOf(actions, actionCount * 2);
+        }
+        times[actionCount] = time;
+        actions[actionCount++] = action;
+    }
+
+    public void addTetromino(int number) {
+        if (tetrominoCount == tetrominos.length) {
+            tetrominos = Arrays.copyOf(tetrominos, tetrominoCount * 2);
+        }
+        tetrominos[tetrominoCount++] = (byte) number;
+    }
+
+    public boolean hasNextAction() {return nextActionIndx < actionCount;}
+    public Action getNextAction(){
+        Action action = new Action(times[nextActionIndx], actions[nextActionIndx]);
+        nextActionIndx++;
+        return action;
+    }
+
+    public boolean hasNextTetromino() {return nextTetrminoIndx < tetrominoCount;}
+    public int getNextTetrmino() {return tetrominos[nextTetrminoIndx++];}
+
+    public void setRandomizer(int randomizerId, long seed) {
+        this.randomizerId = randomizerId;
+        this.seed = seed;
+    }
+
+    public int getRandomizerId() {return randomizerId;}
+    public long getSeed() {return seed;}
+
+    /**
+     * A new randomizer which repeats the tetrominos of the game.
+     */
+    public Randomizer createRandomizer() {return Randomizer.create(randomizerId, seed);}
+
+    public int getActionCount() {return actionCount;}
+    public long getActionTime(int i) {return times[i];}
+    public byte getAction(int i) {return actions[i];}
+
+    public int getTetrominoCount() {return tetrominoCount;}
+    public int getTetromino(int i) {return tetrominos[i];}
+
+    /**
+     * Encodes the replay: the header with the randomizer, then every action as one byte with its code and the
+     * lowest bits of the milliseconds since the previous action, followed by the rest of that delta as varint if
+     * needed, then the tetrominos packed with 3 bits each.
+     */
+    public byte[] toBytes() {
+        Output out = new Output(16 + actionCount * 4 + tetrominoCount * TETROMINO_BITS / 8);
+        for (byte b : MAGIC) {
+            out.write(b);
+        }
+        out.write(VERSION);
+        out.write(randomizerId);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (seed >>> shift));
+        }
+        out.writeVarLong(actionCount);
+        out.writeVarLong(tetrominoCount);
+
+        long previous = 0;
+        for (int i = 0; i < actionCount; i++) {
+            long time = times[i] / TIME_UNIT;
+            out.writeAction(time - previous, actions[i]);
+            previous = time;
+        }
+
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = 0; i < tetrominoCount; i++) {
+            bits |= tetrominos[i] << bitCount;
+            bitCount += TETROMINO_BITS;
+            if (bitCount >= 8) {
+                out.write(bits);
+                bits >>>= 8;
+                bitCount -= 8;
+            }
+        }
+        if (bitCount > 0) {
+            out.write(bits);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a replay encoded by {@link #toBytes()}.
+     *
+     * @throws IOException if the bytes are not a replay of a supported version.
+     */
+    public static Replay fromBytes(byte[] bytes) throws IOException {
+        return fromBuffer(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes a replay encoded by {@link #toBytes()} from the remaining bytes of the buffer, without copying them
+     * first. The position of the buffer is moved past the bytes read.
+     *
+     * @throws IOException if the bytes are not a replay of a supported version.
+     */
+    public static Replay fromBuffer(ByteBuffer buffer) throws IOException {
+        Input in = new Input(buffer);
+        for (byte b : MAGIC) {
+            if (in.read() != (b & 0xFF)) {
+                throw new IOException("Not a replay");
+            }
+        }
+        int version = in.read();
+        // Version 1 has no seed, and its tetrominos cannot be played back by the engine.
+        if (version != VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        Replay replay = new Replay();
+        int randomizerId = in.read();
+        long seed = 0;
+        for (int i = 0; i < 8; i++) {
+            seed = seed << 8 | in.read();
+        }
+        if (randomizerId != Randomizer.UNIFORM && randomizerId != Randomizer.BAG) {
+            throw new IOException("Unknown randomizer " + randomizerId);
+        }
+        replay.setRandomizer(randomizerId, seed);
+        long actionCount = in.readVarLong();
+        long tetrominoCount = in.readVarLong();
+        // Every action takes at least a byte, and the tetrominos follow the actions. Counts which do not fit into
+        // the rest are corrupt and must not size the arrays.
+        long remaining = in.remaining();
+        if (actionCount < 0 || actionCount > remaining || tetrominoCount < 0
+                || tetrominoCount > (remaining - actionCount) * 8 / TETROMINO_BITS) {
+            throw new IOException("Replay is corrupt");
+        }
+
+        replay.times = new long[(int) Math.max(actionCount, 1)];
+        replay.actions = new byte[(int) Math.max(actionCount, 1)];
+        replay.tetrominos = new byte[(int) Math.max(tetrominoCount, 1)];
+
+        long time = 0;
+        for (int i = 0; i < actionCount; i++) {
+            int first = in.read();
+            time += in.readDelta(first);
+            replay.addAction(time * TIME_UNIT, action(first));
+        }
+
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = 0; i < tetrominoCount; i++) {
+            if (bitCount < TETROMINO_BITS) {
+                bits |= in.read() << bitCount;
+                bitCount += 8;
+            }
+            replay.addTetromino(bits & (1 << TETROMINO_BITS) - 1);
+            bits >>>= TETROMINO_BITS;
+            bitCount -= TETROMINO_BITS;
+        }
+        return replay;
+    }
+
+    public void write(OutputStream out) throws IOException {
+        out.write(toBytes());
+    }
+
+    public static Replay read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            bytes.write(buffer, 0, n);
+        }
+        return fromBytes(bytes.toByteArray());
+    }
+
+    /**
+     * The action code of the first byte of an encoded action.
+     */
+    static byte action(int first) {
+        return (byte) (first & (1 << OPCODE_BITS) - 1);
+    }
+
+    /**
+     * A growing byte buffer.
+     */
+    static final class Output {
+        private byte[] bytes;
+        private int size;
+
+        Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void write(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        /**
+         * 7 bits per byte, lowest first, the highest bit says if another byte follows.
+         */
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        /**
+         * One byte with the action code and the lowest bits of the delta in time units, followed by the rest of
+         * the delta as varint if needed.
+         */
+        void writeAction(long delta, byte action) {
+            long rest = delta >>> DELTA_BITS;
+            write(action & (1 << OPCODE_BITS) - 1
+                    | (int) (delta & (1 << DELTA_BITS) - 1) << OPCODE_BITS
+                    | (rest != 0 ? 0x80 : 0));
+            if (rest != 0) {
+                writeVarLong(rest);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * The written bytes, valid up to {@link #size()} until the next write.
+         */
+        byte[] array() {
+            return bytes;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    static final class Input {
+        private final ByteBuffer buffer;
+
+        Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean hasRemaining() {
+            return buffer.hasRemaining();
+        }
+
+        int remaining() {
+            return buffer.remaining();
+        }
+
+        int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Replay is truncated");
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        /**
+         * The delta of an action in time units, after its first byte was read.
+         */
+        long readDelta(int first) throws IOException {
+            long delta = first >>> OPCODE_BITS & (1 << DELTA_BITS) - 1;
+            if ((first & 0x80) != 0) {
+                delta |= readVarLong() << DELTA_BITS;
+            }
+            return delta;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
    }
 
-class Action implements Serializable{
-    public static byte ROTATE = 0x1;
-    public static byte MOVE_LEFT = 0x2;
-    public static byte MOVE_RIGHT = 0x3;
-    public static byte DROP_DOWN = 0x4;
+class Action {
+    public static final byte ROTATE = 0x1;
+    public static final byte MOVE_LEFT = 0x2;
+    public static final byte MOVE_RIGHT = 0x3;
+    public static final byte DROP_DOWN = 0x4;
+    public static final byte MOVE_DOWN = 0x5;
+    public static final byte ROTATE_RIGHT = 0x6;
 
     private long time;
     private byte action;
@@ -0,0 +1,634 @@
+package tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Many replays in one file, read through a memory mapping.
+ * <p>
+ * The file starts with a header. Blocks follow, and each block holds replays of about {@link #BLOCK_SIZE} bytes,
+ * encoded by {@link Replay#toBytes()} and deflated together. A block which deflating does not make smaller is stored
+ * as it is. The index comes at the end: one entry of fixed size per block and one per replay, followed by a
+ * trailer which says where the index starts. So a replay is found without reading anything but its entry, and a
+ * replay in a stored block is decoded straight from the mapping.
+ * <p>
+ * New replays are appended by a {@link Writer}. It writes the new blocks behind the trailer and then the whole
+ * index and a trailer again, so nothing written before is touched, and the last complete trailer always points to
+ * a complete index. Like the end record of a zip file the trailer is searched from the end, so an append which was
+ * cut off loses only its own replays. Once the old indexes take up more room than the rest, the writer copies the
+ * archive without them to a new file which replaces the old one. A reader keeps seeing the archive as it was when
+ * it was opened. An archive holds at most 2 GiB, the size of one mapping.
+ * <p>
+ * Usage: {@code java tetris.ReplayArchive ARCHIVE [REPLAY...]} appends the replay files, recordings of a
+ * {@link ReplayRecorder} or written by {@link Replay#write(java.io.OutputStream)}, to the archive, creating it if
+ * needed, then decodes all replays in parallel and prints a summary.
+ */
+final class ReplayArchive {
+
+    private static final byte[] MAGIC = {'T', 'R', 'P', 'A'};
+
+    private static final int VERSION = 1;
+
+    /**
+     * Magic, version and three reserved bytes.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Replays are collected into a block until it holds this many bytes before deflating.
+     */
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final int STORED = 0;
+
+    private static final int DEFLATED = 1;
+
+    /**
+     * Per block: offset (long), length in the file, length after inflating, first replay and how it is stored
+     * (int each).
+     */
+    private static final int BLOCK_ENTRY_SIZE = 24;
+
+    /**
+     * Per replay: block, offset in the inflated block and length (int each).
+     */
+    private static final int REPLAY_ENTRY_SIZE = 12;
+
+    /**
+     * Offset of the index (long), number of blocks and replays (int each) and the magic again.
+     */
+    private static final int TRAILER_SIZE = 20;
+
+    private final ByteBuffer buffer;
+
+    private final int blockCount;
+
+    private final int replayCount;
+
+    private final int blockTable;
+
+    private final int replayTable;
+
+    /**
+     * Every thread inflates with its own inflater into its own buffer.
+     */
+    private final ThreadLocal<Decoder> decoders = new ThreadLocal<Decoder>() {
+        @Override
+        protected Decoder initialValue() {
+            return new Decoder();
+        }
+    };
+
+    private ReplayArchive(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        int trailer = findTrailer(buffer);
+        blockTable = (int) buffer.getLong(trailer);
+        blockCount = buffer.getInt(trailer + 8);
+        replayCount = buffer.getInt(trailer + 12);
+        replayTable = blockTable + blockCount * BLOCK_ENTRY_SIZE;
+    }
+
+    /**
+     * Checks the header and finds the last complete trailer.
+     *
+     * @return the offset of the trailer.
+     * @throws IOException if the file is not an archive or has no complete trailer.
+     */
+    private static int findTrailer(ByteBuffer file) throws IOException {
+        if (file.capacity() < HEADER_SIZE + TRAILER_SIZE) {
+            throw new IOException("Not a replay archive");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (file.get(i) != MAGIC[i]) {
+                throw new IOException("Not a replay archive");
+            }
+        }
+        if (file.get(MAGIC.length) != VERSION) {
+            throw new IOException("Unsupported replay archive version " + file.get(MAGIC.length));
+        }
+        for (int trailer = file.capacity() - TRAILER_SIZE; trailer >= HEADER_SIZE; trailer--) {
+            if (isTrailer(file, trailer)) {
+                return trailer;
+            }
+        }
+        throw new IOException("Replay archive index is missing");
+    }
+
+    /**
+     * Whether a trailer starts at the given offset: it ends with the magic and its index ends right before it.
+     */
+    private static boolean isTrailer(ByteBuffer file, int trailer) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (file.get(trailer + TRAILER_SIZE - MAGIC.length + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        long indexOffset = file.getLong(trailer);
+        int blocks = file.getInt(trailer + 8);
+        int replays = file.getInt(trailer + 12);
+        return indexOffset >= HEADER_SIZE && blocks >= 0 && replays >= 0
+                && indexOffset + (long) blocks * BLOCK_ENTRY_SIZE + (long) replays * REPLAY_ENTRY_SIZE == trailer;
+    }
+
+    /**
+     * Maps an archive written by a {@link Writer}. The file is not needed open afterwards.
+     *
+     * @throws IOException if the file cannot be read or is not an archive.
+     */
+    static ReplayArchive open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Replay archive is larger than 2 GiB");
+            }
+            return new ReplayArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Number of replays.
+     */
+    public int size() {
+        return replayCount;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Decodes one replay. Only its block is read, and of a deflated block only the part up to the replay. May be
+     * called by any thread.
+     *
+     * @throws IOException if the archive is corrupt.
+     */
+    public Replay get(int index) throws IOException {
+        if (index < 0 || index >= replayCount) {
+            throw new IndexOutOfBoundsException("Replay " + index + " of " + replayCount);
+        }
+        int entry = replayTable + index * REPLAY_ENTRY_SIZE;
+        int block = buffer.getInt(entry);
+        int offset = buffer.getInt(entry + 4);
+        int length = buffer.getInt(entry + 8);
+        ByteBuffer contents = decoders.get().open(block, offset + length);
+        contents.position(offset);
+        return Replay.fromBuffer(contents);
+    }
+
+    /**
+     * Decodes all replays, every block in a task of its own on the pool, and hands them to the visitor. The
+     * visitor is called by the threads of the pool at the same time, and in the order of the replays within a
+     * block only.
+     *
+     * @throws IOException if the archive is corrupt.
+     */
+    public void scan(ForkJoinPool pool, Visitor visitor) throws IOException, InterruptedException {
+        scan(pool, 0, visitor);
+    }
+
+    /**
+     * Like {@link #scan(ForkJoinPool, Visitor)}, but only the replays from the given index on, for example those
+     * appended since the last scan.
+     */
+    public void scan(ForkJoinPool pool, final int from, final Visitor visitor) throws IOException, InterruptedException {
+        List<Callable<Void>> tasks = new ArrayList<>(blockCount);
+        for (int b = blockCount - 1; b >= 0 && from < replayCount; b--) {
+            final int block = b;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    scanBlock(block, from, visitor);
+                    return null;
+                }
+            });
+            if (buffer.getInt(blockTable + b * BLOCK_ENTRY_SIZE + 16) <= from) {
+                break;
+            }
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IllegalStateException("Scan failed", e.getCause());
+            }
+        }
+    }
+
+    private void scanBlock(int block, int from, Visitor visitor) throws IOException {
+        int entry = blockTable + block * BLOCK_ENTRY_SIZE;
+        int first = Math.max(from, buffer.getInt(entry + 16));
+        int last = block + 1 < blockCount ? buffer.getInt(entry + BLOCK_ENTRY_SIZE + 16) : replayCount;
+        ByteBuffer contents = decoders.get().open(block, buffer.getInt(entry + 12));
+        for (int i = first; i < last; i++) {
+            int replay = replayTable + i * REPLAY_ENTRY_SIZE;
+            int offset = buffer.getInt(replay + 4);
+            int length = buffer.getInt(replay + 8);
+            contents.limit(offset + length);
+            contents.position(offset);
+            visitor.visit(i, Replay.fromBuffer(contents));
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Usage: java tetris.ReplayArchive ARCHIVE [REPLAY...]");
+            System.exit(2);
+            return;
+        }
+        Path path = Paths.get(args[0]);
+        if (args.length > 1) {
+            try (Writer writer = Writer.open(path)) {
+                for (int i = 1; i < args.length; i++) {
+                    writer.add(ReplayRecorder.read(Paths.get(args[i])));
+                }
+            }
+        }
+        ReplayArchive archive = open(path);
+        final AtomicLong actions = new AtomicLong();
+        ForkJoinPool pool = new ForkJoinPool();
+        long start = System.nanoTime();
+        try {
+            archive.scan(pool, new Visitor() {
+                @Override
+                public void visit(int index, Replay replay) {
+                    actions.addAndGet(replay.getActionCount());
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("replays=" + archive.size());
+        System.out.println("blocks=" + archive.getBlockCount());
+        System.out.println("bytes=" + Files.size(path));
+        System.out.println("actions=" + actions.get());
+        System.out.println(String.format(Locale.ROOT, "scan-seconds=%.3f", seconds));
+    }
+
+    /**
+     * Receives the replays of a {@link #scan(ForkJoinPool, Visitor)}.
+     */
+    interface Visitor {
+
+        /**
+         * May be called by several threads at once.
+         */
+        void visit(int index, Replay replay);
+    }
+
+    /**
+     * Reads the blocks for one thread.
+     */
+    private final class Decoder {
+
+        private final Inflater inflater = new Inflater();
+
+        private byte[] input = new byte[0];
+
+        private byte[] output = new byte[0];
+
+        /**
+         * The first bytes of a block after inflating. A stored block is not copied.
+         *
+         * @param needed the number of bytes from the start of the block which must be readable.
+         */
+        private ByteBuffer open(int block, int needed) throws IOException {
+            int entry = blockTable + block * BLOCK_ENTRY_SIZE;
+            int start = (int) buffer.getLong(entry);
+            int stored = buffer.getInt(entry + 8);
+            int inflated = buffer.getInt(entry + 12);
+            if (needed > inflated || start < HEADER_SIZE || start + stored > blockTable) {
+                throw new IOException("Replay archive index is corrupt");
+            }
+            if (buffer.getInt(entry + 20) == STORED) {
+                ByteBuffer contents = buffer.duplicate();
+                contents.limit(start + needed);
+                contents.position(start);
+                return contents.slice();
+            }
+            if (input.length < stored) {
+                input = new byte[stored];
+            }
+            if (output.length < inflated) {
+                output = new byte[inflated];
+            }
+            ByteBuffer source = buffer.duplicate();
+            source.position(start);
+            source.get(input, 0, stored);
+            inflater.reset();
+            inflater.setInput(input, 0, stored);
+            try {
+                int n = 0;
+                while (n < needed) {
+                    int read = inflater.inflate(output, n, needed - n);
+                    if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Replay archive block " + block + " is truncated");
+                    }
+                    n += read;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Replay archive block " + block + " is corrupt", e);
+            }
+            return ByteBuffer.wrap(output, 0, needed);
+        }
+    }
+
+    /**
+     * Appends replays to an archive. Not thread-safe. The new replays are readable once {@link #close()} has written
+     * the index.
+     */
+    static final class Writer implements java.io.Closeable {
+
+        private final Path path;
+
+        private FileChannel channel;
+
+        private final Deflater deflater = new Deflater();
+
+        private long position;
+
+        /**
+         * The length of all blocks in the file.
+         */
+        private long blockBytes;
+
+        private long[] blockOffsets = new long[16];
+
+        /**
+         * Four ints per block as in its index entry.
+         */
+        private int[] blocks = new int[16 * 4];
+
+        private int blockCount;
+
+        /**
+         * Three ints per replay as in its index entry.
+         */
+        private int[] replays = new int[64 * 3];
+
+        private int replayCount;
+
+        /**
+         * The replays of the block being filled.
+         */
+        private byte[] pending = new byte[BLOCK_SIZE];
+
+        private int pendingSize;
+
+        private int pendingFirst;
+
+        private byte[] deflated = new byte[BLOCK_SIZE];
+
+        private Writer(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        /**
+         * Opens an archive for appending, or creates it.
+         *
+         * @throws IOException if the file exists but is not an archive.
+         */
+        static Writer open(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            Writer writer = new Writer(path, channel);
+            try {
+                if (channel.size() == 0) {
+                    // An empty index right away, so the file is an archive from the start.
+                    writer.writeHeader();
+                    writer.writeIndex();
+                } else {
+                    writer.load();
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            return writer;
+        }
+
+        /**
+         * Reads the last complete index of an existing archive. New blocks go behind everything in the file, also
+         * behind what an append which was cut off left.
+         */
+        private void load() throws IOException {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Replay archive is larger than 2 GiB");
+            }
+            ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int trailer = findTrailer(file);
+            int blocks = file.getInt(trailer + 8);
+            int replays = file.getInt(trailer + 12);
+            ByteBuffer index = file.duplicate();
+            index.position((int) file.getLong(trailer));
+            for (int b = 0; b < blocks; b++) {
+                addBlock(index.getLong(), index.getInt(), index.getInt(), index.getInt(), index.getInt());
+            }
+            for (int i = 0; i < replays; i++) {
+                addReplay(index.getInt(), index.getInt(), index.getInt());
+            }
+            position = size;
+            pendingFirst = replayCount;
+        }
+
+        /**
+         * Number of replays in the archive, including those not yet written.
+         */
+        public int size() {
+            return replayCount;
+        }
+
+        public void add(Replay replay) throws IOException {
+            byte[] bytes = replay.toBytes();
+            if (pendingSize > 0 && pendingSize + bytes.length > BLOCK_SIZE) {
+                flush();
+            }
+            if (pendingSize + bytes.length > pending.length) {
+                pending = Arrays.copyOf(pending, pendingSize + bytes.length);
+            }
+            System.arraycopy(bytes, 0, pending, pendingSize, bytes.length);
+            addReplay(blockCount, pendingSize, bytes.length);
+            pendingSize += bytes.length;
+        }
+
+        /**
+         * Writes the block being filled, deflated if that makes it smaller.
+         */
+        private void flush() throws IOException {
+            if (pendingSize == 0) {
+                return;
+            }
+            if (deflated.length < pendingSize) {
+                deflated = new byte[pendingSize];
+            }
+            deflater.reset();
+            deflater.setInput(pending, 0, pendingSize);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished() && length < pendingSize) {
+                length += deflater.deflate(deflated, length, pendingSize - length);
+            }
+            ByteBuffer block;
+            int codec;
+            if (deflater.finished() && length < pendingSize) {
+                block = ByteBuffer.wrap(deflated, 0, length);
+                codec = DEFLATED;
+            } else {
+                block = ByteBuffer.wrap(pending, 0, pendingSize);
+                codec = STORED;
+            }
+            addBlock(position, block.remaining(), pendingSize, pendingFirst, codec);
+            write(block);
+            pendingSize = 0;
+            pendingFirst = replayCount;
+        }
+
+        /**
+         * Writes the last block and the index, and copies the archive without the old indexes if they take up more
+         * room than the rest.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                writeIndex();
+                long used = HEADER_SIZE + blockBytes + indexSize() + TRAILER_SIZE;
+                if (position - used > Math.max(used, BLOCK_SIZE)) {
+                    compact();
+                }
+            } finally {
+                deflater.end();
+                channel.close();
+            }
+        }
+
+        private void writeHeader() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.put(MAGIC).put((byte) VERSION).rewind();
+            write(header);
+        }
+
+        private int indexSize() {
+            return blockCount * BLOCK_ENTRY_SIZE + replayCount * REPLAY_ENTRY_SIZE;
+        }
+
+        /**
+         * Writes the index and the trailer behind the blocks. The trailer is written only once the index is on disk,
+         * so a complete trailer never points to an index which is not.
+         */
+        private void writeIndex() throws IOException {
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate(indexSize());
+            for (int b = 0; b < blockCount; b++) {
+                index.putLong(blockOffsets[b]);
+                for (int j = 0; j < 4; j++) {
+                    index.putInt(blocks[b * 4 + j]);
+                }
+            }
+            for (int i = 0; i < replayCount * 3; i++) {
+                index.putInt(replays[i]);
+            }
+            index.rewind();
+            write(index);
+            channel.force(false);
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            trailer.putLong(indexOffset).putInt(blockCount).putInt(replayCount).put(MAGIC).rewind();
+            write(trailer);
+            channel.force(false);
+        }
+
+        /**
+         * Copies the header, the blocks and the index to a new file, which then replaces the archive. The archive
+         * stays as it is until then.
+         */
+        private void compact() throws IOException {
+            Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            FileChannel old = channel;
+            try {
+                channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                position = 0;
+                writeHeader();
+                byte[] bytes = new byte[BLOCK_SIZE];
+                for (int b = 0; b < blockCount; b++) {
+                    int stored = blocks[b * 4];
+                    if (bytes.length < stored) {
+                        bytes = new byte[stored];
+                    }
+                    ByteBuffer block = ByteBuffer.wrap(bytes, 0, stored);
+                    while (block.hasRemaining()) {
+                        if (old.read(block, blockOffsets[b] + block.position()) < 0) {
+                            throw new IOException("Replay archive is truncated");
+                        }
+                    }
+                    block.flip();
+                    blockOffsets[b] = position;
+                    write(block);
+                }
+                writeIndex();
+                channel.close();
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                Files.deleteIfExists(temp);
+                throw e;
+            } finally {
+                old.close();
+            }
+        }
+
+        private void write(ByteBuffer bytes) throws IOException {
+            if (position + bytes.remaining() > Integer.MAX_VALUE) {
+                throw new IOException("Replay archive would be larger than 2 GiB");
+            }
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+        }
+
+        private void addBlock(long offset, int stored, int inflated, int first, int codec) {
+            if (blockCount == blockOffsets.length) {
+                blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                blocks = Arrays.copyOf(blocks, blockCount * 2 * 4);
+            }
+            blockOffsets[blockCount] = offset;
+            blockBytes += stored;
+            blocks[blockCount * 4] = stored;
+            blocks[blockCount * 4 + 1] = inflated;
+            blocks[blockCount * 4 + 2] = first;
+            blocks[blockCount * 4 + 3] = codec;
+            blockCount++;
+        }
+
+        private void addReplay(int block, int offset, int length) {
+            if (replayCount * 3 == replays.length) {
+                replays = Arrays.copyOf(replays, replays.length * 2);
+            }
+            replays[replayCount * 3] = block;
+            replays[replayCount * 3 + 1] = offset;
+            replays[replayCount * 3 + 2] = length;
+            replayCount++;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package tetris;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds finished recordings to a {@link ReplayArchive} and its {@link ReplayIndex} in batches.
+ * <p>
+ * Every batch opens the archive once and updates the index once, which costs about as much as the archive is big.
+ * So a batch is archived only when {@link #BATCH_SIZE} games are waiting, {@link #BATCH_DELAY} seconds after the
+ * first of them finished, or when the JVM shuts down. The batches run on a thread of their own, not on the thread
+ * writing the recordings of running games.
+ */
+final class ReplayArchiver {
+
+    static final int BATCH_SIZE = 16;
+
+    /**
+     * Seconds a finished game waits at most for others to be archived with.
+     */
+    static final long BATCH_DELAY = 60;
+
+    private static final ScheduledExecutorService ARCHIVER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "replay-archiver");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Path archive;
+
+    /**
+     * Closed recordings not archived yet, guarded by this.
+     */
+    private final List<ReplayRecorder> pending = new ArrayList<>();
+
+    /**
+     * The scheduled batch, null if none is, guarded by this.
+     */
+    private ScheduledFuture<?> batch;
+
+    /**
+     * Held while a batch is written, so the batch at shutdown does not run into a scheduled one.
+     */
+    private final Object writing = new Object();
+
+    ReplayArchiver(Path archive) {
+        this.archive = archive;
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                archivePending();
+            }
+        }, "replay-archiver-shutdown"));
+    }
+
+    /**
+     * Queues a closed recorder. Its file is read only when its batch is archived, after it is complete.
+     */
+    public synchronized void add(ReplayRecorder recording) {
+        pending.add(recording);
+        if (pending.size() >= BATCH_SIZE || batch == null) {
+            if (batch != null) {
+                batch.cancel(false);
+            }
+            batch = ARCHIVER.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    archivePending();
+                }
+            }, pending.size() >= BATCH_SIZE ? 0 : BATCH_DELAY, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Archives all waiting recordings with one writer and one update of the index.
+     */
+    private void archivePending() {
+        synchronized (writing) {
+            List<ReplayRecorder> recordings;
+            synchronized (this) {
+                recordings = new ArrayList<>(pending);
+                pending.clear();
+                batch = null;
+            }
+            if (recordings.isEmpty()) {
+                return;
+            }
+            try {
+                try (ReplayArchive.Writer writer = ReplayArchive.Writer.open(archive)) {
+                    for (ReplayRecorder recording : recordings) {
+                        try {
+                            writer.add(recording.read());
+                        } catch (IOException e) {
+                            System.err.println("Can't archive " + recording.getPath() + ": " + e);
+                        }
+                    }
+                }
+                try (ReplayIndex.Writer writer = ReplayIndex.Writer.open(ReplayIndex.indexPath(archive))) {
+                    writer.update(ReplayArchive.open(archive), ForkJoinPool.commonPool());
+                }
+            } catch (IOException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                System.err.println("Can't archive " + recordings.size() + " games in " + archive + ": " + e);
+            }
+        }
+    }
+}
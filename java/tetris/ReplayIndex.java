@@ -0,0 +1,473 @@
+package tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Numbers of every replay of a {@link ReplayArchive} in a side file, so they can be queried without decoding the
+ * replays.
+ * <p>
+ * Row i belongs to replay i of the archive. The file is stored by columns: after the header every column holds
+ * one int per row, followed by room for more rows. A query reads only the columns it needs. A new row is written
+ * into the free room of every column and only then counted in the header, so the file is consistent after every
+ * row. When the room is used up, the file is written again with twice as much room and replaces the old one.
+ * Readers keep the file they opened and simply do not see the rows added afterwards. {@link ReplayArchiver}
+ * adds the finished games to an archive and its index in batches.
+ * <p>
+ * Usage: {@code java tetris.ReplayIndex ARCHIVE [query]} brings ARCHIVE.index up to date with the archive and
+ * prints the replays found by the query, one per line with all columns. The queries are
+ * <ul>
+ * <li>top=COLUMN:N, the N replays with the highest values, 10 by default.</li>
+ * <li>range=COLUMN:MIN:MAX, the replays with a value from MIN to MAX, MAX may be left out.</li>
+ * </ul>
+ */
+final class ReplayIndex {
+
+    /**
+     * The score by {@link GameEngine#points(int)}, as the {@link ScoreManager} counts it.
+     */
+    static final int SCORE = 0;
+
+    /**
+     * The time of the last action in milliseconds.
+     */
+    static final int DURATION = 1;
+
+    static final int ACTIONS = 2;
+
+    /**
+     * Number of locked tetrominos.
+     */
+    static final int PIECES = 3;
+
+    /**
+     * Number of times one row was eliminated, followed by the columns for two, three and four rows at once.
+     */
+    static final int SINGLES = 4;
+
+    static final int DOUBLES = 5;
+
+    static final int TRIPLES = 6;
+
+    static final int TETRISES = 7;
+
+    static final int COLUMNS = 8;
+
+    static final String[] COLUMN_NAMES = {"score", "duration", "actions", "pieces", "singles", "doubles", "triples",
+            "tetrises"};
+
+    private static final byte[] MAGIC = {'T', 'R', 'P', 'I'};
+
+    private static final int VERSION = 1;
+
+    /**
+     * Magic, version, three reserved bytes, number of rows and room for rows (int each).
+     */
+    private static final int HEADER_SIZE = 16;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final IntBuffer[] columns = new IntBuffer[COLUMNS];
+
+    private final int size;
+
+    private ReplayIndex(ByteBuffer buffer) throws IOException {
+        int capacity = checkHeader(buffer, buffer.capacity());
+        size = buffer.getInt(8);
+        for (int c = 0; c < COLUMNS; c++) {
+            buffer.limit(HEADER_SIZE + (c * capacity + size) * 4);
+            buffer.position(HEADER_SIZE + c * capacity * 4);
+            columns[c] = buffer.slice().asIntBuffer();
+        }
+    }
+
+    /**
+     * Maps an index written by a {@link Writer}.
+     *
+     * @throws IOException if the file cannot be read or is not an index.
+     */
+    static ReplayIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Replay index is larger than 2 GiB");
+            }
+            return new ReplayIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Checks the header of an index file of the given size.
+     *
+     * @return the room for rows.
+     */
+    private static int checkHeader(ByteBuffer header, long fileSize) throws IOException {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header.get(i) != MAGIC[i]) {
+                throw new IOException("Not a replay index");
+            }
+        }
+        if (header.get(MAGIC.length) != VERSION) {
+            throw new IOException("Unsupported replay index version " + header.get(MAGIC.length));
+        }
+        int size = header.getInt(8);
+        int capacity = header.getInt(12);
+        if (size < 0 || size > capacity || HEADER_SIZE + (long) COLUMNS * capacity * 4 != fileSize) {
+            throw new IOException("Replay index is corrupt");
+        }
+        return capacity;
+    }
+
+    /**
+     * Number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int get(int replay, int column) {
+        return columns[column].get(replay);
+    }
+
+    /**
+     * The replays with the highest values in the column, highest first. Equal values are in the order of the
+     * replays.
+     */
+    public int[] top(int column, int count) {
+        IntBuffer values = columns[column];
+        count = Math.min(count, size);
+        // A min-heap of the best replays so far, the worst of them on top.
+        int[] heap = new int[count];
+        int heapSize = 0;
+        for (int replay = 0; replay < size && count > 0; replay++) {
+            int value = values.get(replay);
+            if (heapSize < count) {
+                int i = heapSize++;
+                while (i > 0 && better(values, heap[(i - 1) / 2], value, replay)) {
+                    heap[i] = heap[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                heap[i] = replay;
+            } else if (better(values, replay, values.get(heap[0]), heap[0])) {
+                siftDown(values, heap, heapSize, replay);
+            }
+        }
+        // Taking the worst off the heap again and again fills the result from its end.
+        int[] result = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            heapSize--;
+            if (heapSize > 0) {
+                siftDown(values, heap, heapSize, heap[heapSize]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Puts the replay on top of the heap and moves it down to its place.
+     */
+    private static void siftDown(IntBuffer values, int[] heap, int heapSize, int replay) {
+        int i = 0;
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && better(values, heap[child], values.get(heap[child + 1]), heap[child + 1])) {
+                child++;
+            }
+            if (!better(values, replay, values.get(heap[child]), heap[child])) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = replay;
+    }
+
+    /**
+     * True if replay a ranks above the other replay with the given value.
+     */
+    private static boolean better(IntBuffer values, int a, int value, int other) {
+        int valueA = values.get(a);
+        return valueA > value || valueA == value && a < other;
+    }
+
+    /**
+     * The replays with a value from min to max in the column, in their order.
+     */
+    public int[] range(int column, int min, int max) {
+        IntBuffer values = columns[column];
+        int[] result = new int[16];
+        int count = 0;
+        for (int replay = 0; replay < size; replay++) {
+            int value = values.get(replay);
+            if (value >= min && value <= max) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = replay;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Plays a replay without drawing it and returns its row.
+     */
+    static int[] aggregate(Replay replay) {
+        ReplayPlayer player = new ReplayPlayer(replay);
+        int[] row = new int[COLUMNS];
+        while (player.hasNext()) {
+            if (player.next() == GameEngine.LOCKED) {
+                int rows = Integer.bitCount(player.getEngine().getClearedRows());
+                if (rows > 0) {
+                    row[SINGLES + Math.min(rows, 4) - 1]++;
+                }
+            }
+        }
+        row[SCORE] = player.getScore();
+        row[DURATION] = (int) Math.min(player.getDuration() / 1000000, Integer.MAX_VALUE);
+        row[ACTIONS] = replay.getActionCount();
+        row[PIECES] = player.getTetrominos();
+        return row;
+    }
+
+    static int column(String name) {
+        for (int c = 0; c < COLUMNS; c++) {
+            if (COLUMN_NAMES[c].equals(name)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column " + name + ", one of " + Arrays.toString(COLUMN_NAMES));
+    }
+
+    /**
+     * The index of an archive, ARCHIVE.index next to it.
+     */
+    static Path indexPath(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + ".index");
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int[] replays;
+        ReplayIndex index;
+        try {
+            if (args.length == 0 || args.length > 2) {
+                throw new IllegalArgumentException("Expected an archive and at most one query");
+            }
+            Path archivePath = Paths.get(args[0]);
+            Path indexPath = indexPath(archivePath);
+            long start = System.nanoTime();
+            ForkJoinPool pool = new ForkJoinPool();
+            try (Writer writer = Writer.open(indexPath)) {
+                int added = writer.update(ReplayArchive.open(archivePath), pool);
+                System.out.println(String.format(Locale.ROOT, "# indexed %d new replays in %.3f seconds", added,
+                        (System.nanoTime() - start) / 1e9));
+            } finally {
+                pool.shutdown();
+            }
+            start = System.nanoTime();
+            index = open(indexPath);
+            String query = args.length > 1 ? args[1] : "top=score:10";
+            int separator = query.indexOf('=');
+            String[] parameters = query.substring(separator + 1).split(":");
+            String name = separator < 0 ? "" : query.substring(0, separator);
+            if (name.equals("top") && parameters.length <= 2) {
+                replays = index.top(column(parameters[0]), parameters.length > 1 ? Integer.parseInt(parameters[1]) : 10);
+            } else if (name.equals("range") && parameters.length >= 2 && parameters.length <= 3) {
+                replays = index.range(column(parameters[0]), Integer.parseInt(parameters[1]),
+                        parameters.length > 2 ? Integer.parseInt(parameters[2]) : Integer.MAX_VALUE);
+            } else {
+                throw new IllegalArgumentException("Unknown query " + query);
+            }
+            System.out.println(String.format(Locale.ROOT, "# %d of %d replays in %.3f milliseconds", replays.length,
+                    index.size(), (System.nanoTime() - start) / 1e6));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java tetris.ReplayIndex ARCHIVE [top=COLUMN[:N] | range=COLUMN:MIN[:MAX]]");
+            System.exit(2);
+            return;
+        }
+        StringBuilder line = new StringBuilder("# replay");
+        for (String name : COLUMN_NAMES) {
+            line.append(' ').append(name);
+        }
+        System.out.println(line);
+        for (int replay : replays) {
+            line.setLength(0);
+            line.append(replay);
+            for (int c = 0; c < COLUMNS; c++) {
+                line.append(' ').append(index.get(replay, c));
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Appends rows to an index. Not thread-safe.
+     */
+    static final class Writer implements java.io.Closeable {
+
+        private final Path path;
+
+        private FileChannel channel;
+
+        private int size;
+
+        private int capacity;
+
+        private Writer(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Opens an index for appending, or creates an empty one.
+         *
+         * @throws IOException if the file exists but is not an index.
+         */
+        static Writer open(Path path) throws IOException {
+            Writer writer = new Writer(path);
+            if (Files.exists(path)) {
+                writer.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                try {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    while (header.hasRemaining() && writer.channel.read(header, header.position()) > 0) {
+                    }
+                    writer.capacity = checkHeader(header, writer.channel.size());
+                    writer.size = header.getInt(8);
+                } catch (IOException e) {
+                    writer.channel.close();
+                    throw e;
+                }
+            } else {
+                writer.resize(INITIAL_CAPACITY);
+            }
+            return writer;
+        }
+
+        /**
+         * Number of rows, including those written by this writer.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Appends the row of the next replay, as returned by {@link #aggregate(Replay)}.
+         */
+        public void add(int[] row) throws IOException {
+            addAll(new int[][]{row});
+        }
+
+        /**
+         * Appends the rows of the next replays with one write per column.
+         */
+        public void addAll(int[][] rows) throws IOException {
+            if (rows.length == 0) {
+                return;
+            }
+            int newCapacity = capacity;
+            while (size + rows.length > newCapacity) {
+                newCapacity *= 2;
+            }
+            if (newCapacity != capacity) {
+                resize(newCapacity);
+            }
+            ByteBuffer column = ByteBuffer.allocate(rows.length * 4);
+            for (int c = 0; c < COLUMNS; c++) {
+                column.clear();
+                for (int[] row : rows) {
+                    column.putInt(row[c]);
+                }
+                column.flip();
+                write(column, HEADER_SIZE + ((long) c * capacity + size) * 4);
+            }
+            size += rows.length;
+            ByteBuffer header = ByteBuffer.allocate(4);
+            header.putInt(0, size);
+            write(header, 8);
+        }
+
+        /**
+         * Adds the rows of the replays of the archive which are not in the index yet. They are played on the pool,
+         * in parallel.
+         *
+         * @return the number of rows added.
+         * @throws IOException if the index has more rows than the archive replays, so it belongs to another one.
+         */
+        public int update(ReplayArchive archive, ForkJoinPool pool) throws IOException, InterruptedException {
+            final int from = size;
+            if (from > archive.size()) {
+                throw new IOException("The replay index has more rows than the archive has replays");
+            }
+            final int[][] rows = new int[archive.size() - from][];
+            archive.scan(pool, from, new ReplayArchive.Visitor() {
+                @Override
+                public void visit(int index, Replay replay) {
+                    rows[index - from] = aggregate(replay);
+                }
+            });
+            addAll(rows);
+            return rows.length;
+        }
+
+        /**
+         * Writes all rows into a new file with the given room and puts it in place of the old one.
+         */
+        private void resize(int newCapacity) throws IOException {
+            ByteBuffer file = ByteBuffer.allocate(HEADER_SIZE + COLUMNS * newCapacity * 4);
+            file.put(MAGIC).put((byte) VERSION);
+            file.putInt(8, size).putInt(12, newCapacity);
+            if (channel != null) {
+                ByteBuffer column = ByteBuffer.allocate(size * 4);
+                for (int c = 0; c < COLUMNS; c++) {
+                    column.clear();
+                    long offset = HEADER_SIZE + (long) c * capacity * 4;
+                    while (column.hasRemaining()) {
+                        if (channel.read(column, offset + column.position()) < 0) {
+                            throw new IOException("Replay index is truncated");
+                        }
+                    }
+                    file.position(HEADER_SIZE + c * newCapacity * 4);
+                    file.put(column.array());
+                }
+                channel.close();
+            }
+            file.rewind();
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (file.hasRemaining()) {
+                    out.write(file);
+                }
+                out.force(false);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            capacity = newCapacity;
+        }
+
+        private void write(ByteBuffer bytes, long offset) throws IOException {
+            while (bytes.hasRemaining()) {
+                offset += channel.write(bytes, offset);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
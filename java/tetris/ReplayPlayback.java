@@ -0,0 +1,125 @@
+package tetris;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ReadOnlyLongWrapper;
+
+/**
+ * Plays a replay on the {@link Board} in time, driven by the pulses of JavaFX.
+ * <p>
+ * Every pulse the replay clock advances by the elapsed time times the speed, and all actions which are due by
+ * then are handed to the board in one batch. The board runs its transitions with the same speed, so it is ready
+ * for the next action when it is due. If the board is still busy with a transition, the action waits for it,
+ * but only up to {@link #MAX_LAG}: beyond that the board is set to the state of the {@link ReplayPlayer}
+ * without transitions, so a fast playback never falls behind the clock.
+ */
+final class ReplayPlayback {
+
+    static final double MIN_SPEED = 0.25;
+
+    static final double MAX_SPEED = 64;
+
+    /**
+     * Nanoseconds of real time an action may wait for the board.
+     */
+    private static final long MAX_LAG = 100000000;
+
+    private final Board board;
+
+    private final ReplayPlayer player;
+
+    /**
+     * The replay clock, nanoseconds since the start of the game.
+     */
+    private final ReadOnlyLongWrapper time;
+
+    private double speed = 1;
+
+    /**
+     * The replay time at the pulse {@link #baseNow}, from which the clock advances.
+     */
+    private long baseTime;
+
+    /**
+     * The pulse from which the clock advances, or -1 to take the next one.
+     */
+    private long baseNow = -1;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            pulse(now);
+        }
+    };
+
+    /**
+     * @param time the property which shows the replay clock.
+     */
+    public ReplayPlayback(Board board, ReplayPlayer player, ReadOnlyLongWrapper time) {
+        this.board = board;
+        this.player = player;
+        this.time = time;
+        baseTime = time.get();
+    }
+
+    public ReplayPlayer getPlayer() {
+        return player;
+    }
+
+    public void play() {
+        baseNow = -1;
+        timer.start();
+    }
+
+    public void pause() {
+        timer.stop();
+        baseTime = time.get();
+    }
+
+    /**
+     * Continues the clock from the given time, after the board has been set to it.
+     */
+    public void setTime(long time) {
+        this.time.set(time);
+        baseTime = time;
+        baseNow = -1;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Sets the speed, clamped to {@link #MIN_SPEED} and {@link #MAX_SPEED}. 1 is the speed of the game.
+     */
+    public double setSpeed(double speed) {
+        baseTime = time.get();
+        baseNow = -1;
+        this.speed = Math.max(MIN_SPEED, Math.min(MAX_SPEED, speed));
+        return this.speed;
+    }
+
+    private void pulse(long now) {
+        if (baseNow < 0) {
+            baseNow = now;
+        }
+        long target = baseTime + (long) ((now - baseNow) * speed);
+        while (player.hasNext() && player.getNextTime() <= target) {
+            if (!board.isReadyForReplay()) {
+                if ((target - player.getNextTime()) / speed > MAX_LAG) {
+                    player.fastForward(target);
+                    board.showReplay();
+                }
+                break;
+            }
+            byte action = player.getNextAction();
+            player.next();
+            board.playReplayAction(action);
+        }
+        if (!player.hasNext()) {
+            // The game is over, the clock stops at its end.
+            target = player.getDuration();
+            timer.stop();
+        }
+        time.set(target);
+    }
+}
@@ -0,0 +1,189 @@
+package tetris;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays a {@link Replay} on a {@link GameEngine} without drawing anything, so it runs as fast as the engine.
+ * <p>
+ * While playing, a copy of the engine is kept every {@link #KEYFRAME_INTERVAL} tetrominos. Seeking to a time
+ * restores the last keyframe before it and plays only the actions from there, so a seek costs at most the
+ * actions of that many tetrominos, wherever it goes. The keyframes are taken the first time the game passes
+ * them and reused by every later seek.
+ */
+final class ReplayPlayer {
+
+    /**
+     * Number of tetrominos between two keyframes.
+     */
+    static final int KEYFRAME_INTERVAL = 32;
+
+    private final Replay replay;
+
+    private final GameEngine engine;
+
+    private final List<Keyframe> keyframes = new ArrayList<>();
+
+    /**
+     * Index of the next action to play.
+     */
+    private int position;
+
+    /**
+     * Number of tetrominos locked so far.
+     */
+    private int tetrominos;
+
+    private int score;
+
+    public ReplayPlayer(Replay replay) {
+        this.replay = replay;
+        this.engine = new GameEngine(replay.createRandomizer());
+        engine.reset();
+        keyframes.add(new Keyframe(Long.MIN_VALUE, 0, 0, 0, engine));
+    }
+
+    /**
+     * The engine in the state after the played actions. Must not be changed by the caller.
+     */
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    public Replay getReplay() {
+        return replay;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getTetrominos() {
+        return tetrominos;
+    }
+
+    /**
+     * The score of the game so far, counted by {@link GameEngine#points(int)}.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * The time of the last action in nanoseconds since the start of the game.
+     */
+    public long getDuration() {
+        int count = replay.getActionCount();
+        return count == 0 ? 0 : replay.getActionTime(count - 1);
+    }
+
+    public boolean hasNext() {
+        return position < replay.getActionCount();
+    }
+
+    /**
+     * The time of the next action, or Long.MAX_VALUE if all actions have been played.
+     */
+    public long getNextTime() {
+        return hasNext() ? replay.getActionTime(position) : Long.MAX_VALUE;
+    }
+
+    /**
+     * The code of the next action, only valid if {@link #hasNext()}.
+     */
+    public byte getNextAction() {
+        return replay.getAction(position);
+    }
+
+    /**
+     * Plays the next action.
+     *
+     * @return the result of the action like {@link GameEngine#step()}, {@link GameEngine#MOVED} for a successful
+     * rotation or move and {@link GameEngine#IDLE} for a blocked one.
+     */
+    public int next() {
+        byte action = replay.getAction(position++);
+        int result;
+        switch (action) {
+            case Action.MOVE_DOWN:
+                result = engine.step();
+                break;
+            case Action.DROP_DOWN:
+                result = engine.hardDrop();
+                break;
+            default:
+                result = engine.apply(action) ? GameEngine.MOVED : GameEngine.IDLE;
+                break;
+        }
+        if (result == GameEngine.LOCKED) {
+            tetrominos++;
+            score += GameEngine.points(Integer.bitCount(engine.getClearedRows()));
+            if (tetrominos == keyframes.size() * KEYFRAME_INTERVAL) {
+                keyframes.add(new Keyframe(replay.getActionTime(position - 1), position, tetrominos, score, engine));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Plays all actions up to the given time, in nanoseconds since the start of the game.
+     */
+    public void fastForward(long time) {
+        while (hasNext() && replay.getActionTime(position) <= time) {
+            next();
+        }
+    }
+
+    /**
+     * Brings the engine into the state after all actions up to the given time, forwards or backwards.
+     */
+    public void seek(long time) {
+        Keyframe keyframe = keyframes.get(0);
+        for (int low = 0, high = keyframes.size() - 1; low <= high; ) {
+            int middle = (low + high) >>> 1;
+            if (keyframes.get(middle).time <= time) {
+                keyframe = keyframes.get(middle);
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        // Going on from the current state is cheaper, if it is between the keyframe and the time.
+        boolean behind = position > 0 && replay.getActionTime(position - 1) > time;
+        if (behind || keyframe.position > position) {
+            engine.copyFrom(keyframe.engine);
+            position = keyframe.position;
+            tetrominos = keyframe.tetrominos;
+            score = keyframe.score;
+        }
+        fastForward(time);
+    }
+
+    /**
+     * The state of the game after an action.
+     */
+    private static final class Keyframe {
+
+        /**
+         * The time of the last played action.
+         */
+        private final long time;
+
+        private final int position;
+
+        private final int tetrominos;
+
+        private final int score;
+
+        private final GameEngine engine;
+
+        private Keyframe(long time, int position, int tetrominos, int score, GameEngine engine) {
+            this.time = time;
+            this.position = position;
+            this.tetrominos = tetrominos;
+            this.score = score;
+            this.engine = new GameEngine(engine.getRandomizer().copy());
+            this.engine.copyFrom(engine);
+        }
+    }
+}
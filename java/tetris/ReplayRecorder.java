@@ -0,0 +1,297 @@
+package tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a game to a file while it is played, so neither a long game nor a crash costs more than a little.
+ * <p>
+ * The file starts with a header holding the randomizer and its seed, from which all tetrominos of the game follow.
+ * The actions come in chunks, each with its length and a CRC32, and are encoded like in {@link Replay#toBytes()}.
+ * Actions are collected until {@link #FLUSH_SIZE} bytes or {@link #FLUSH_INTERVAL} have come together and are then
+ * written as a chunk by a background thread, so only the chunk being filled is kept in memory. While no actions
+ * come, the recording thread calls {@link #flushIfDue(long)} so the chunk is written all the same. {@link #read(Path)}
+ * stops at the first chunk which is cut off or damaged, so after a crash the game is there up to the last chunk
+ * which was written completely.
+ * <p>
+ * Recording happens on one thread, writing on a thread shared by all recorders. Closing does not wait for the
+ * writing thread, {@link #read()} does.
+ */
+final class ReplayRecorder implements java.io.Closeable {
+
+    /**
+     * A chunk is written once it holds this many bytes.
+     */
+    static final int FLUSH_SIZE = 4096;
+
+    /**
+     * A chunk is written once its first action is this many nanoseconds old.
+     */
+    static final long FLUSH_INTERVAL = 1000000000L;
+
+    private static final byte[] MAGIC = {'T', 'R', 'P', 'S'};
+
+    private static final int VERSION = 1;
+
+    /**
+     * Magic, version, randomizer id and seed.
+     */
+    private static final int HEADER_SIZE = 14;
+
+    /**
+     * Length of the actions and their CRC32 (int each).
+     */
+    private static final int CHUNK_HEADER_SIZE = 8;
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "replay-writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private final Replay.Output chunk = new Replay.Output(FLUSH_SIZE + 16);
+
+    /**
+     * The time of the last recorded action in time units of the replay.
+     */
+    private long previousTime;
+
+    /**
+     * The time of the first action of the chunk in nanoseconds.
+     */
+    private long chunkStart;
+
+    /**
+     * The first error of the writing thread, thrown by the next call.
+     */
+    private volatile IOException failure;
+
+    private boolean closed;
+
+    /**
+     * Done once the file is closed, null before {@link #close()}.
+     */
+    private Future<?> done;
+
+    private ReplayRecorder(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Creates the file and writes the header.
+     *
+     * @throws IOException if the file cannot be created.
+     */
+    static ReplayRecorder create(Path path, int randomizerId, long seed) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).put((byte) VERSION).put((byte) randomizerId).putLong(seed).flip();
+        try {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new ReplayRecorder(path, channel);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Records an action at the given nanoseconds since the start of the game.
+     *
+     * @throws IOException if writing an earlier chunk failed.
+     */
+    public void addAction(long time, byte action) throws IOException {
+        checkFailure();
+        if (chunk.size() == 0) {
+            chunkStart = time;
+        }
+        long units = time / Replay.TIME_UNIT;
+        chunk.writeAction(units - previousTime, action);
+        previousTime = units;
+        if (chunk.size() >= FLUSH_SIZE || time - chunkStart >= FLUSH_INTERVAL) {
+            flush();
+        }
+    }
+
+    /**
+     * Hands the actions recorded so far to the writing thread if the first of them is at least
+     * {@link #FLUSH_INTERVAL} old at the given nanoseconds since the start of the game.
+     *
+     * @throws IOException if writing an earlier chunk failed.
+     */
+    public void flushIfDue(long time) throws IOException {
+        if (chunk.size() > 0 && time - chunkStart >= FLUSH_INTERVAL) {
+            flush();
+        }
+    }
+
+    /**
+     * Hands the actions recorded so far to the writing thread.
+     *
+     * @throws IOException if writing an earlier chunk failed.
+     */
+    public void flush() throws IOException {
+        checkFailure();
+        if (chunk.size() == 0) {
+            return;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(chunk.array(), 0, chunk.size());
+        final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_HEADER_SIZE + chunk.size());
+        bytes.putInt(chunk.size()).putInt((int) crc.getValue()).put(chunk.array(), 0, chunk.size()).flip();
+        chunk.clear();
+        WRITER.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (failure != null) {
+                    return;
+                }
+                try {
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Hands the rest to the writing thread, which then puts the file on disk and closes it. Does nothing if already
+     * closed. A failure of the writing thread after this is printed.
+     *
+     * @throws IOException if writing an earlier chunk failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            done = WRITER.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (failure == null) {
+                            channel.force(false);
+                        }
+                    } catch (IOException e) {
+                        failure = e;
+                    } finally {
+                        try {
+                            channel.close();
+                        } catch (IOException e) {
+                            if (failure == null) {
+                                failure = e;
+                            }
+                        }
+                    }
+                    if (failure != null) {
+                        System.err.println("Can't write " + path + ": " + failure);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits until the recorder is closed and reads its file like {@link #read(Path)}.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    public Replay read() throws IOException {
+        if (done != null) {
+            try {
+                done.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while closing " + path, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Can't write " + path, e.getCause());
+            }
+        }
+        return read(path);
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Can't write " + path, failure);
+        }
+    }
+
+    /**
+     * Reads a recording, up to the last complete chunk if its end is missing or damaged. Also reads files written
+     * by {@link Replay#write(java.io.OutputStream)}.
+     *
+     * @throws IOException if the file cannot be read or even its header is damaged.
+     */
+    static Replay read(Path path) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (bytes.remaining() < HEADER_SIZE || bytes.getInt(0) != ByteBuffer.wrap(MAGIC).getInt()) {
+            return Replay.fromBytes(bytes.array());
+        }
+        if (bytes.get(MAGIC.length) != VERSION) {
+            throw new IOException("Unsupported recording version " + bytes.get(MAGIC.length));
+        }
+        int randomizerId = bytes.get(MAGIC.length + 1);
+        if (randomizerId != Randomizer.UNIFORM && randomizerId != Randomizer.BAG) {
+            throw new IOException("Unknown randomizer " + randomizerId);
+        }
+        Replay replay = new Replay();
+        replay.setRandomizer(randomizerId, bytes.getLong(MAGIC.length + 2));
+        bytes.position(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        long time = 0;
+        while (bytes.remaining() >= CHUNK_HEADER_SIZE) {
+            int length = bytes.getInt();
+            int checksum = bytes.getInt();
+            if (length < 0 || length > bytes.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(bytes.array(), bytes.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer actions = bytes.slice();
+            actions.limit(length);
+            bytes.position(bytes.position() + length);
+            Replay.Input in = new Replay.Input(actions);
+            while (in.hasRemaining()) {
+                int first = in.read();
+                time += in.readDelta(first);
+                replay.addAction(time * Replay.TIME_UNIT, Replay.action(first));
+            }
+        }
+        return replay;
+    }
+}
@@ -1,67 +1,96 @@
-
 package tetris;
 
+import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
 import javafx.beans.property.SimpleIntegerProperty;
-import javafx.geometry.HorizontalDirection;
+
+import java.nio.file.Paths;
 
 /**
- * Manages the score.
+ * Manages the score, and the high scores of all games played by hand.
  */
-final class ScoreManager implements Board.BoardListener {
+final class ScoreManager implements BoardEvents.Subscriber {
 
     private final IntegerProperty score = new SimpleIntegerProperty();
 
+    private final ReadOnlyIntegerWrapper best = new ReadOnlyIntegerWrapper();
+
+    private final ReadOnlyIntegerWrapper rank = new ReadOnlyIntegerWrapper();
+
     private final GameController gameController;
 
+    /**
+     * -Dtetris.scores, by default .tetris/scores in the home directory.
+     */
+    private final HighScores highScores = new HighScores(Paths.get(System.getProperty("tetris.scores",
+            System.getProperty("user.home") + "/.tetris/scores")));
+
     public ScoreManager(GameController gameController) {
         this.gameController = gameController;
-        gameController.getBoard().addBoardListener(this);
+        gameController.getBoard().getEvents().subscribe(BoardEvents.ROWS_ELIMINATED | BoardEvents.GAME_OVER, this);
+        highScores.load(new Runnable() {
+            @Override
+            public void run() {
+                Platform.runLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        best.set(highScores.best());
+                    }
+                });
+            }
+        });
     }
 
     public IntegerProperty scoreProperty() {
         return score;
     }
 
-    private void addScore(int score) {
-        this.score.set(this.score.get() + score);
+    /**
+     * The highest score ever reached by hand, 0 until the high scores are loaded.
+     */
+    public ReadOnlyIntegerProperty bestProperty() {
+        return best.getReadOnlyProperty();
     }
 
-    @Override
-    public void onDropped() {
+    /**
+     * The rank of the last game played by hand among all of them, from 1, or 0 if there is none.
+     */
+    public ReadOnlyIntegerProperty rankProperty() {
+        return rank.getReadOnlyProperty();
     }
 
-    @Override
-    public void onRowsEliminated(int rows) {
-        switch (rows) {
-            case 1:
-                addScore(5);
-                break;
-            case 2:
-                addScore(20);
-                break;
-            case 3:
-                addScore(50);
-                break;
-            case 4:
-                addScore(100);
-                break;
-        }
+    public HighScores getHighScores() {
+        return highScores;
     }
 
-    @Override
-    public void onGameOver() {
-    }
-
-    @Override
-    public void onInvalidMove() {
-    }
-
-    @Override
-    public void onMove(HorizontalDirection horizontalDirection) {
+    private void addScore(int score) {
+        this.score.set(this.score.get() + score);
     }
 
+    /**
+     * Adds the points of all rows eliminated in the frame at once, so the score changes at most once per frame.
+     */
     @Override
-    public void onRotate(HorizontalDirection horizontalDirection) {
+    public void onEvents(BoardEvents.Batch events) {
+        // A replay takes the score from its player.
+        if (gameController.getBoard().isReplay()) {
+            return;
+        }
+        int points = 0;
+        for (int i = 0; i < events.size(); i++) {
+            if (events.getKind(i) == BoardEvents.ROWS_ELIMINATED) {
+                points += GameEngine.points(events.getValue(i));
+            }
+        }
+        if (points > 0) {
+            addScore(points);
+        }
+        // Games of the bot do not count, replays returned above. The store writes the score in the background.
+        if (events.contains(BoardEvents.GAME_OVER) && !gameController.getBoard().isBot()) {
+            rank.set(highScores.add(score.get(), System.currentTimeMillis()));
+            best.set(highScores.best());
+        }
     }
 }
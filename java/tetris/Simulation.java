@@ -0,0 +1,341 @@
+package tetris;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Plays complete games with the {@link AutoPlayer} on a {@link GameEngine}, without JavaFX.
+ * <p>
+ * The games are spread over a work-stealing pool with one thread per core. The player places every tetromino
+ * at once and it does not fall on its own, so a game takes as long as the player needs to decide. Every game is
+ * given by its seed: the same seed, randomizer and player play the same game.
+ * <p>
+ * Usage: {@code java tetris.Simulation [option=value]...} with the options
+ * <ul>
+ * <li>games: number of games, 100 by default.</li>
+ * <li>seed: the seed of the first game, the others follow one by one. 1 by default.</li>
+ * <li>seeds: a comma separated list of seeds instead of games and seed.</li>
+ * <li>randomizer: uniform (the default) or bag.</li>
+ * <li>lookahead: number of tetrominos of the queue the player looks at, 0 by default.</li>
+ * <li>weights: height,holes,bumpiness,lines, by default {@link AutoPlayer.Weights#DEFAULT}.</li>
+ * <li>max-pieces: a game is stopped after this many tetrominos, 100000 by default.</li>
+ * <li>threads: size of the pool, by default the number of cores.</li>
+ * <li>per-game: true prints one line per game before the summary.</li>
+ * </ul>
+ * The summary is printed as key=value lines.
+ */
+public final class Simulation {
+
+    private static final double[] PERCENTILES = {10, 50, 90, 99};
+
+    private final int randomizerId;
+
+    private final AutoPlayer autoPlayer;
+
+    private final int maxPieces;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param autoPlayer plays all games. It must not have a time limit, otherwise the games depend on the speed of
+     *                   the machine.
+     * @param pool       runs the games, and the lookahead of the player if it uses the same pool.
+     */
+    Simulation(int randomizerId, AutoPlayer autoPlayer, int maxPieces, ForkJoinPool pool) {
+        this.randomizerId = randomizerId;
+        this.autoPlayer = autoPlayer;
+        this.maxPieces = maxPieces;
+        this.pool = pool;
+    }
+
+    /**
+     * Plays one game with the given seed in the calling thread.
+     */
+    Result play(long seed) {
+        long start = System.nanoTime();
+        GameEngine engine = new GameEngine(Randomizer.create(randomizerId, seed));
+        engine.reset();
+        int pieces = 0;
+        int lines = 0;
+        int score = 0;
+        while (!engine.isGameOver() && pieces < maxPieces) {
+            AutoPlayer.Placement placement = autoPlayer.decide(engine);
+            if (placement != null) {
+                while (engine.getRotation() != placement.rotation && engine.rotate(true)) {
+                }
+                while (engine.getX() != placement.x && engine.move(engine.getX() < placement.x ? 1 : -1)) {
+                }
+            }
+            int result = engine.hardDrop();
+            if (result == GameEngine.IDLE) {
+                break;
+            }
+            if (result == GameEngine.LOCKED) {
+                pieces++;
+                int rows = Integer.bitCount(engine.getClearedRows());
+                lines += rows;
+                score += GameEngine.points(rows);
+            }
+        }
+        return new Result(seed, pieces, lines, score, !engine.isGameOver(), System.nanoTime() - start);
+    }
+
+    /**
+     * Plays the games of all seeds on the pool.
+     *
+     * @return the results in the order of the seeds.
+     */
+    Result[] playAll(long[] seeds) throws InterruptedException {
+        List<Callable<Result>> games = new ArrayList<>(seeds.length);
+        for (final long seed : seeds) {
+            games.add(new Callable<Result>() {
+                @Override
+                public Result call() {
+                    return play(seed);
+                }
+            });
+        }
+        List<Future<Result>> futures = pool.invokeAll(games);
+        Result[] results = new Result[seeds.length];
+        for (int i = 0; i < results.length; i++) {
+            try {
+                results[i] = futures.get(i).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Game with seed " + seeds[i] + " failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Options options;
+        try {
+            options = new Options(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java tetris.Simulation [games=N] [seed=S | seeds=S1,S2,...] [randomizer=uniform|bag]"
+                    + " [lookahead=N] [weights=height,holes,bumpiness,lines] [max-pieces=N] [threads=N] [per-game=true]");
+            System.exit(2);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(options.threads);
+        AutoPlayer autoPlayer = new AutoPlayer(options.weights, options.lookahead, 0, pool);
+        Simulation simulation = new Simulation(options.randomizerId, autoPlayer, options.maxPieces, pool);
+
+        long start = System.nanoTime();
+        Result[] results = simulation.playAll(options.seeds);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        if (options.perGame) {
+            System.out.println("# seed pieces lines score capped seconds");
+            for (Result result : results) {
+                System.out.println(result);
+            }
+        }
+        System.out.print(summary(options, results, seconds));
+    }
+
+    /**
+     * The summary of a run as key=value lines.
+     */
+    static String summary(Options options, Result[] results, double seconds) {
+        int n = results.length;
+        long[] pieces = new long[n];
+        long[] lines = new long[n];
+        long[] scores = new long[n];
+        long totalPieces = 0;
+        long gameNanos = 0;
+        int capped = 0;
+        for (int i = 0; i < n; i++) {
+            pieces[i] = results[i].pieces;
+            lines[i] = results[i].lines;
+            scores[i] = results[i].score;
+            totalPieces += results[i].pieces;
+            gameNanos += results[i].nanos;
+            if (results[i].capped) {
+                capped++;
+            }
+        }
+        StringBuilder summary = new StringBuilder();
+        summary.append("games=").append(n).append('\n');
+        summary.append("randomizer=").append(options.randomizerId == Randomizer.BAG ? "bag" : "uniform").append('\n');
+        summary.append("lookahead=").append(options.lookahead).append('\n');
+        summary.append("weights=").append(options.weights.format()).append('\n');
+        summary.append("threads=").append(options.threads).append('\n');
+        summary.append("max-pieces=").append(options.maxPieces).append('\n');
+        summary.append("capped=").append(capped).append('\n');
+        summary.append(String.format(Locale.ROOT, "seconds=%.3f%n", seconds));
+        summary.append(String.format(Locale.ROOT, "pieces-per-second=%.1f%n", totalPieces / seconds));
+        summary.append(String.format(Locale.ROOT, "pieces-per-second-per-game=%.1f%n",
+                gameNanos == 0 ? 0 : totalPieces / (gameNanos / 1e9)));
+        distribution(summary, "pieces", pieces);
+        distribution(summary, "lines", lines);
+        distribution(summary, "score", scores);
+        return summary.toString();
+    }
+
+    /**
+     * Appends the mean, minimum, percentiles and maximum of the values, which are sorted by it.
+     */
+    private static void distribution(StringBuilder summary, String name, long[] values) {
+        if (values.length == 0) {
+            return;
+        }
+        Arrays.sort(values);
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        summary.append(String.format(Locale.ROOT, "%s.mean=%.2f%n", name, (double) sum / values.length));
+        summary.append(name).append(".min=").append(values[0]).append('\n');
+        for (double percentile : PERCENTILES) {
+            int rank = Math.max(1, (int) Math.ceil(percentile / 100 * values.length));
+            summary.append(name).append(".p").append((int) percentile).append('=').append(values[rank - 1]).append('\n');
+        }
+        summary.append(name).append(".max=").append(values[values.length - 1]).append('\n');
+    }
+
+    /**
+     * The outcome of one game.
+     */
+    static final class Result {
+
+        final long seed;
+
+        /**
+         * Number of locked tetrominos.
+         */
+        final int pieces;
+
+        final int lines;
+
+        /**
+         * The score by {@link GameEngine#points(int)}.
+         */
+        final int score;
+
+        /**
+         * True if the game was stopped after the maximum number of tetrominos instead of being lost.
+         */
+        final boolean capped;
+
+        final long nanos;
+
+        Result(long seed, int pieces, int lines, int score, boolean capped, long nanos) {
+            this.seed = seed;
+            this.pieces = pieces;
+            this.lines = lines;
+            this.score = score;
+            this.capped = capped;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d %d %d %d %b %.3f", seed, pieces, lines, score, capped, nanos / 1e9);
+        }
+    }
+
+    /**
+     * The options given on the command line.
+     */
+    static final class Options {
+
+        long[] seeds;
+
+        int randomizerId = Randomizer.UNIFORM;
+
+        int lookahead;
+
+        AutoPlayer.Weights weights = AutoPlayer.Weights.DEFAULT;
+
+        int maxPieces = 100000;
+
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        boolean perGame;
+
+        /**
+         * @throws IllegalArgumentException if an option is unknown or its value is invalid.
+         */
+        Options(String[] args) {
+            int games = 100;
+            long seed = 1;
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Not an option=value: " + arg);
+                }
+                String name = arg.substring(0, separator);
+                String value = arg.substring(separator + 1);
+                try {
+                    switch (name) {
+                        case "games":
+                            games = Integer.parseInt(value);
+                            break;
+                        case "seed":
+                            seed = Long.parseLong(value);
+                            break;
+                        case "seeds":
+                            String[] list = value.split(",");
+                            seeds = new long[list.length];
+                            for (int i = 0; i < list.length; i++) {
+                                seeds[i] = Long.parseLong(list[i].trim());
+                            }
+                            break;
+                        case "randomizer":
+                            randomizerId = randomizer(value);
+                            break;
+                        case "lookahead":
+                            lookahead = Integer.parseInt(value);
+                            break;
+                        case "weights":
+                            weights = AutoPlayer.Weights.parse(value);
+                            break;
+                        case "max-pieces":
+                            maxPieces = Integer.parseInt(value);
+                            break;
+                        case "threads":
+                            threads = Integer.parseInt(value);
+                            break;
+                        case "per-game":
+                            perGame = Boolean.parseBoolean(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown option " + name);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid value of " + name + ": " + value);
+                }
+            }
+            if (games < 0 || lookahead < 0 || maxPieces <= 0 || threads <= 0) {
+                throw new IllegalArgumentException("games and lookahead must not be negative, max-pieces and threads must be positive");
+            }
+            if (seeds == null) {
+                seeds = new long[games];
+                for (int i = 0; i < games; i++) {
+                    seeds[i] = seed + i;
+                }
+            }
+        }
+
+        static int randomizer(String name) {
+            switch (name) {
+                case "uniform":
+                    return Randomizer.UNIFORM;
+                case "bag":
+                    return Randomizer.BAG;
+                default:
+                    throw new IllegalArgumentException("Unknown randomizer " + name);
+            }
+        }
+    }
+}
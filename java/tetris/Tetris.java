@@ -39,6 +39,8 @@ public final class Tetris extends HBox {
         stackPane.getChildren().add(gameController.getBoard());
 
         stackPane.getChildren().add(gameController.getNotificationOverlay());
+        stackPane.getChildren().add(gameController.getProfilerOverlay());
+        StackPane.setAlignment(gameController.getProfilerOverlay(), Pos.TOP_LEFT);
         stackPane.setAlignment(Pos.TOP_CENTER);
 
         getChildren().add(stackPane);
@@ -68,38 +70,46 @@ public final class Tetris extends HBox {
         //если да, то сделать выдачу рандомных нажатий.
         setOnKeyPressed(new EventHandler<KeyEvent>() {
             public void handle(KeyEvent keyEvent) {
+                // Начало обработки нажатия, от него меряется задержка до кадра. Меряются только нажатия,
+                // которые изменили доску.
+                long keyTime = System.nanoTime();
 
                 if (keyEvent.getCode() == KeyCode.LEFT && !gameController.pausedProperty().get()) {
-                    gameController.getBoard().move(HorizontalDirection.LEFT);
-                    long br = System.nanoTime();
-                    new Action(20, Action.MOVE_LEFT);
+                    if (gameController.getBoard().move(HorizontalDirection.LEFT)) {
+                        gameController.getInputLatency().keyHandled(keyTime);
+                    }
                     keyEvent.consume();
                 }
 
                 if (keyEvent.getCode() == KeyCode.RIGHT && !gameController.pausedProperty().get()) {
-                    gameController.getBoard().move(HorizontalDirection.RIGHT);
-                    new Action(100, Action.MOVE_RIGHT);
+                    if (gameController.getBoard().move(HorizontalDirection.RIGHT)) {
+                        gameController.getInputLatency().keyHandled(keyTime);
+                    }
                     keyEvent.consume();
                 }
 
                 if (keyEvent.getCode() == KeyCode.UP && !gameController.pausedProperty().get()) {
-                    gameController.getBoard().rotate(HorizontalDirection.LEFT);
-                    new Action(100, Action.ROTATE);
+                    if (gameController.getBoard().rotate(HorizontalDirection.LEFT)) {
+                        gameController.getInputLatency().keyHandled(keyTime);
+                    }
                     keyEvent.consume();
                 }
 
                 if (keyEvent.getCode() == KeyCode.DOWN) {
                     if (!movingDown) {
                         if (!gameController.pausedProperty().get()) {
-                            gameController.getBoard().moveDownFast();
+                            if (gameController.getBoard().moveDownFast()) {
+                                gameController.getInputLatency().keyHandled(keyTime);
+                            }
                         }
                         movingDown = true;
                         keyEvent.consume();
                     }
                 }
                 if (keyEvent.getCode() == KeyCode.SPACE && !gameController.pausedProperty().get()) {
-                    gameController.getBoard().dropDown();
-                    new Action(100, Action.DROP_DOWN);
+                    if (gameController.getBoard().dropDown()) {
+                        gameController.getInputLatency().keyHandled(keyTime);
+                    }
                     keyEvent.consume();
                 }
             }
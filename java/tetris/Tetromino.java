@@ -1,10 +1,6 @@
 
 package tetris;
 
-import javafx.beans.property.ReadOnlyDoubleProperty;
-import javafx.beans.value.ChangeListener;
-import javafx.beans.value.ObservableValue;
-import javafx.beans.value.WeakChangeListener;
 import javafx.scene.Group;
 import javafx.scene.effect.Light;
 import javafx.scene.effect.Lighting;
@@ -12,61 +8,33 @@ import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.Rectangle;
 
-import java.util.Random;
-
+/**
+ * A tetromino as a node. Its blocks are squares of {@link Board#CELL} and it is moved in cells of that size, the
+ * board scales it to the size of a cell on the screen.
+ */
 final class Tetromino extends Group implements Cloneable {
 
-    private static final Random RANDOM = new Random();
-
-    private static final TetrominoDefinition I = new TetrominoDefinition(new int[][]{
-            {0, 0, 0, 0},
-            {1, 1, 1, 1},
-            {0, 0, 0, 0},
-            {0, 0, 0, 0}
-    }, Color.RED);
-
-    private static final TetrominoDefinition J = new TetrominoDefinition(new int[][]{
-            {1, 0, 0},
-            {1, 1, 1},
-            {0, 0, 0}
-    }, Color.BLUE);
-
-    private static final TetrominoDefinition L = new TetrominoDefinition(new int[][]{
-            {0, 0, 1},
-            {1, 1, 1},
-            {0, 0, 0}
-    }, Color.ORANGE);
-
-    private static final TetrominoDefinition O = new TetrominoDefinition(new int[][]{
-            {1, 1},
-            {1, 1}
-    }, Color.GREEN);
-
-    private static final TetrominoDefinition S = new TetrominoDefinition(new int[][]{
-            {0, 1, 1},
-            {1, 1, 0},
-            {0, 0, 0}
-    }, Color.DARKGRAY);
-
-    private static final TetrominoDefinition T = new TetrominoDefinition(new int[][]{
-            {0, 1, 0},
-            {1, 1, 1},
-            {0, 0, 0}
-    }, Color.BROWN);
-
-    private static final TetrominoDefinition Z = new TetrominoDefinition(new int[][]{
-            {1, 1, 0},
-            {0, 1, 1},
-            {0, 0, 0}
-    }, Color.ORANGERED);
+    private static final TetrominoDefinition I = new TetrominoDefinition(TetrominoShape.I, Color.RED);
+
+    private static final TetrominoDefinition J = new TetrominoDefinition(TetrominoShape.J, Color.BLUE);
+
+    private static final TetrominoDefinition L = new TetrominoDefinition(TetrominoShape.L, Color.ORANGE);
+
+    private static final TetrominoDefinition O = new TetrominoDefinition(TetrominoShape.O, Color.GREEN);
+
+    private static final TetrominoDefinition S = new TetrominoDefinition(TetrominoShape.S, Color.DARKGRAY);
+
+    private static final TetrominoDefinition T = new TetrominoDefinition(TetrominoShape.T, Color.BROWN);
+
+    private static final TetrominoDefinition Z = new TetrominoDefinition(TetrominoShape.Z, Color.ORANGERED);
 
     public static final TetrominoDefinition[] TETROMINO_DEFINITIONS = new TetrominoDefinition[]{I, J, L, O, S, T, Z};
 
     /**
-     * Random index in TETROMINO_DEFINITION
+     * Index in TETROMINO_DEFINITIONS
      * */
 
-    private int randomTetrominoDefenition;
+    private int kind;
 
     private Lighting lighting = new Lighting();
 
@@ -76,12 +44,9 @@ final class Tetromino extends Group implements Cloneable {
 
     private TetrominoDefinition tetrominoDefinition;
 
-    private ReadOnlyDoubleProperty squareSize;
-
-    private Tetromino(TetrominoDefinition tetrominoDefinition, ReadOnlyDoubleProperty squareSize) {
-        this.matrix = tetrominoDefinition.matrix;
+    private Tetromino(TetrominoDefinition tetrominoDefinition) {
+        this.matrix = tetrominoDefinition.shape.getMatrix();
         this.tetrominoDefinition = tetrominoDefinition;
-        this.squareSize = squareSize;
         paint = tetrominoDefinition.color;
 
         lighting = new Lighting();
@@ -91,24 +56,9 @@ final class Tetromino extends Group implements Cloneable {
         for (int i = 0; i < matrix.length; i++) {
             for (int j = 0; j < matrix[i].length; j++) {
 
-                final Rectangle rectangle = new Rectangle();
-                final int finalI = i;
-                final int finalJ = j;
-                ChangeListener<Number> changeListener = new ChangeListener<Number>() {
-                    @Override
-                    public void changed(ObservableValue<? extends Number> observableValue, Number number, Number number2) {
-                        rectangle.setWidth(number2.doubleValue());
-                        rectangle.setHeight(number2.doubleValue());
-                        rectangle.setTranslateY(number2.doubleValue() * finalI);
-                        rectangle.setTranslateX(number2.doubleValue() * finalJ);
-                    }
-                };
-                rectangle.setUserData(changeListener);
-                squareSize.addListener(new WeakChangeListener<>(changeListener));
-                rectangle.setWidth(squareSize.doubleValue());
-                rectangle.setHeight(squareSize.get());
-                rectangle.setTranslateY(squareSize.get() * finalI);
-                rectangle.setTranslateX(squareSize.get() * finalJ);
+                Rectangle rectangle = new Rectangle(Board.CELL, Board.CELL);
+                rectangle.setTranslateY(i * Board.CELL);
+                rectangle.setTranslateX(j * Board.CELL);
                 //анимация в воздухе
                 if (matrix[i][j] == 1) {
                     rectangle.setEffect(lighting);
@@ -128,22 +78,29 @@ final class Tetromino extends Group implements Cloneable {
         //setCache(true);
     }
 
-    public static Tetromino random(ReadOnlyDoubleProperty squareSize) {
-        int randomInt = RANDOM.nextInt(7);
-        TetrominoDefinition tetrominoDefinition = TETROMINO_DEFINITIONS[randomInt];
-
-        Tetromino x = new Tetromino(tetrominoDefinition, squareSize);
-        x.setRandomTetrominoDefenition(randomInt);
+    /**
+     * Creates the tetromino of the given kind, an index in TETROMINO_DEFINITIONS.
+     */
+    public static Tetromino of(int kind) {
+        Tetromino x = new Tetromino(TETROMINO_DEFINITIONS[kind]);
+        x.kind = kind;
         return x;
     }
 
-    public void setRandomTetrominoDefenition(int i) {
-        randomTetrominoDefenition = i;
+    public int getKind() {
+        return kind;
     }
 
     @Override
     public Tetromino clone() {
-        return new Tetromino(tetrominoDefinition, squareSize);
+        return of(kind);
+    }
+
+    /**
+     * The color of the given kind, an index in TETROMINO_DEFINITIONS.
+     */
+    public static Color colorOf(int kind) {
+        return TETROMINO_DEFINITIONS[kind].color;
     }
 
     public Paint getFill() {
@@ -158,23 +115,26 @@ final class Tetromino extends Group implements Cloneable {
         return matrix;
     }
 
-    public void setMatrix(int[][] matrix) {
-        this.matrix = matrix;
+    /**
+     * The shape with all orientations of this tetromino.
+     */
+    public TetrominoShape getShape() {
+        return tetrominoDefinition.shape;
     }
 
     private static class TetrominoDefinition {
         private final Color color;
 
-        private final int[][] matrix;
+        private final TetrominoShape shape;
 
-        private TetrominoDefinition(int[][] matrix, Color color) {
+        private TetrominoDefinition(TetrominoShape shape, Color color) {
             this.color = color;
-            this.matrix = matrix;
+            this.shape = shape;
         }
     }
 
     @Override
     public String toString() {
-        return new Integer(randomTetrominoDefenition).toString() ;
+        return new Integer(kind).toString() ;
     }
 }
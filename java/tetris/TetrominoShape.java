@@ -0,0 +1,162 @@
+package tetris;
+
+/**
+ * The cell layout of one tetromino kind. Kept apart from {@link Tetromino}, so the game rules can use it
+ * without JavaFX.
+ * <p>
+ * All four orientations are computed once when the class is loaded, so rotating a tetromino only changes
+ * an index into {@link #getOrientation(int)}.
+ */
+final class TetrominoShape {
+
+    static final TetrominoShape I = new TetrominoShape(new int[][]{
+            {0, 0, 0, 0},
+            {1, 1, 1, 1},
+            {0, 0, 0, 0},
+            {0, 0, 0, 0}
+    });
+
+    static final TetrominoShape J = new TetrominoShape(new int[][]{
+            {1, 0, 0},
+            {1, 1, 1},
+            {0, 0, 0}
+    });
+
+    static final TetrominoShape L = new TetrominoShape(new int[][]{
+            {0, 0, 1},
+            {1, 1, 1},
+            {0, 0, 0}
+    });
+
+    static final TetrominoShape O = new TetrominoShape(new int[][]{
+            {1, 1},
+            {1, 1}
+    });
+
+    static final TetrominoShape S = new TetrominoShape(new int[][]{
+            {0, 1, 1},
+            {1, 1, 0},
+            {0, 0, 0}
+    });
+
+    static final TetrominoShape T = new TetrominoShape(new int[][]{
+            {0, 1, 0},
+            {1, 1, 1},
+            {0, 0, 0}
+    });
+
+    static final TetrominoShape Z = new TetrominoShape(new int[][]{
+            {1, 1, 0},
+            {0, 1, 1},
+            {0, 0, 0}
+    });
+
+    /**
+     * All shapes, indexed by kind. The order matches {@link Tetromino#TETROMINO_DEFINITIONS}.
+     */
+    static final TetrominoShape[] SHAPES = new TetrominoShape[]{I, J, L, O, S, T, Z};
+
+    /**
+     * Number of orientations of every shape.
+     */
+    static final int ORIENTATIONS = 4;
+
+    private final Orientation[] orientations = new Orientation[ORIENTATIONS];
+
+    private TetrominoShape(int[][] matrix) {
+        for (int i = 0; i < ORIENTATIONS; i++) {
+            orientations[i] = new Orientation(matrix);
+            matrix = rotate(matrix, true);
+        }
+    }
+
+    /**
+     * The matrix of the shape in its spawn orientation.
+     */
+    int[][] getMatrix() {
+        return orientations[0].matrix;
+    }
+
+    /**
+     * The orientation after rotating the spawn orientation clockwise by rotation * 90 degrees.
+     */
+    Orientation getOrientation(int rotation) {
+        return orientations[rotation];
+    }
+
+    /**
+     * The rotation index after rotating by 90 degrees.
+     */
+    static int rotate(int rotation, boolean clockwise) {
+        return (rotation + (clockwise ? 1 : ORIENTATIONS - 1)) % ORIENTATIONS;
+    }
+
+    /**
+     * Packs every row of the matrix into a bit mask.
+     */
+    private static int[] rowMasks(int[][] matrix) {
+        int[] masks = new int[matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                if (matrix[i][j] == 1) {
+                    masks[i] |= 1 << j;
+                }
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Rotates a square matrix by 90 degrees into a new matrix.
+     */
+    private static int[][] rotate(int[][] matrix, boolean clockwise) {
+        int[][] newMatrix = new int[matrix.length][matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                if (clockwise) {
+                    newMatrix[j][matrix.length - 1 - i] = matrix[i][j];
+                } else {
+                    newMatrix[matrix[i].length - 1 - j][i] = matrix[i][j];
+                }
+            }
+        }
+        return newMatrix;
+    }
+
+    /**
+     * One orientation of a shape. The bounding box gives the first and last occupied row and column
+     * of the matrix, so callers can skip the empty ones.
+     */
+    static final class Orientation {
+
+        final int[][] matrix;
+
+        /**
+         * The rows of the matrix as bit masks, bit j is set if column j is occupied.
+         */
+        final int[] masks;
+
+        final int top, bottom, left, right;
+
+        private Orientation(int[][] matrix) {
+            this.matrix = matrix;
+            this.masks = rowMasks(matrix);
+
+            int top = matrix.length, bottom = -1, left = matrix.length, right = -1;
+            for (int i = 0; i < matrix.length; i++) {
+                for (int j = 0; j < matrix[i].length; j++) {
+                    if (matrix[i][j] == 1) {
+                        top = Math.min(top, i);
+                        bottom = Math.max(bottom, i);
+                        left = Math.min(left, j);
+                        right = Math.max(right, j);
+                    }
+                }
+            }
+            this.top = top;
+            this.bottom = bottom;
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
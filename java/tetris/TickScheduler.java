@@ -0,0 +1,122 @@
+package tetris;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.Arrays;
+
+/**
+ * Advances many games with one timer, in ticks of fixed length.
+ * <p>
+ * Every pulse runs as many ticks as have passed since the last one, at most {@link #MAX_TICKS_PER_PULSE}, so the
+ * games run at the same speed whatever the frame rate, and a long frame is not followed by a storm of ticks. Every
+ * tick calls all clients in the order they were added, then the frame listener is run once. So a view of all games
+ * draws once per frame however many ticks there were.
+ * <p>
+ * Only for the JavaFX thread.
+ */
+final class TickScheduler {
+
+    private static final int MAX_TICKS_PER_PULSE = 4;
+
+    private final long tickNanos;
+
+    private Client[] clients = new Client[0];
+
+    private Runnable onFrame;
+
+    private long lastTick;
+
+    private long ticks;
+
+    /**
+     * Nanoseconds spent in the clients and the frame listener during the last pulse.
+     */
+    private long pulseNanos;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            pulse(now);
+        }
+    };
+
+    TickScheduler(int ticksPerSecond) {
+        tickNanos = 1000000000L / ticksPerSecond;
+    }
+
+    public void add(Client client) {
+        clients = Arrays.copyOf(clients, clients.length + 1);
+        clients[clients.length - 1] = client;
+    }
+
+    public void remove(Client client) {
+        for (int i = 0; i < clients.length; i++) {
+            if (clients[i] == client) {
+                Client[] newClients = new Client[clients.length - 1];
+                System.arraycopy(clients, 0, newClients, 0, i);
+                System.arraycopy(clients, i + 1, newClients, i, newClients.length - i);
+                clients = newClients;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs after the ticks of every pulse, also if there were none.
+     */
+    public void setOnFrame(Runnable onFrame) {
+        this.onFrame = onFrame;
+    }
+
+    public void start() {
+        lastTick = 0;
+        timer.start();
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    /**
+     * Number of ticks since the scheduler was created.
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getPulseNanos() {
+        return pulseNanos;
+    }
+
+    private void pulse(long now) {
+        long start = System.nanoTime();
+        if (lastTick == 0) {
+            lastTick = now;
+        }
+        int due = (int) Math.min((now - lastTick) / tickNanos, MAX_TICKS_PER_PULSE);
+        // Time which could not be caught up with is dropped.
+        lastTick = due == MAX_TICKS_PER_PULSE ? now : lastTick + due * tickNanos;
+        Client[] clients = this.clients;
+        for (int t = 0; t < due; t++) {
+            ticks++;
+            for (Client client : clients) {
+                client.tick();
+            }
+        }
+        if (onFrame != null) {
+            onFrame.run();
+        }
+        pulseNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * A game driven by the scheduler.
+     */
+    interface Client {
+
+        /**
+         * Advances the game by one tick.
+         */
+        void tick();
+    }
+}
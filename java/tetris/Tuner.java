@@ -0,0 +1,325 @@
+package tetris;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Tunes the {@link AutoPlayer.Weights} with the noisy cross-entropy method.
+ * <p>
+ * Every generation draws candidates from a normal distribution per weight. Only the direction of the weights
+ * matters to the player, so every candidate is scaled to length one. All candidates play the same seeded games,
+ * which makes their comparison fair, and all games of a generation run on one work-stealing pool. The mean and
+ * the deviation of the best candidates become the distribution of the next generation, with some extra noise
+ * which shrinks from generation to generation so the search does not collapse too early.
+ * <p>
+ * After every generation the state is written to the checkpoint file, and a run started with an existing
+ * checkpoint continues where it stopped. A generation only depends on the options and the checkpoint, so a
+ * resumed run plays the same games as an uninterrupted one.
+ * <p>
+ * Usage: {@code java tetris.Tuner [option=value]...} with the options
+ * <ul>
+ * <li>generations: the generation to stop after, 50 by default.</li>
+ * <li>population: candidates per generation, 32 by default.</li>
+ * <li>elite: the share of the candidates which make up the next distribution, 0.25 by default.</li>
+ * <li>games: games per candidate and generation, 16 by default.</li>
+ * <li>seed: seeds the candidates and the games, 1 by default.</li>
+ * <li>randomizer, lookahead, max-pieces and threads as for {@link Simulation}, but max-pieces is 2000 by
+ * default.</li>
+ * <li>checkpoint: the checkpoint file, tuner.properties by default.</li>
+ * </ul>
+ * The fitness of a candidate is its mean score. Each generation prints one line, the tuned weights can be given
+ * to {@link Simulation} and, with -Dtetris.weights, to the bot of the game.
+ */
+public final class Tuner {
+
+    private static final int WEIGHTS = 4;
+
+    private static final double INITIAL_DEVIATION = 0.5;
+
+    /**
+     * The extra noise added to the variance of the first generation, divided by the generation number later.
+     */
+    private static final double NOISE = 0.04;
+
+    private int generations = 50;
+
+    private int population = 32;
+
+    private double elite = 0.25;
+
+    private int games = 16;
+
+    private long seed = 1;
+
+    private int randomizerId = Randomizer.UNIFORM;
+
+    private int lookahead;
+
+    private int maxPieces = 2000;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private Path checkpoint = Paths.get("tuner.properties");
+
+    /**
+     * The next generation to play, counted from 1.
+     */
+    private int generation = 1;
+
+    private double[] mean = normalize(toArray(AutoPlayer.Weights.DEFAULT));
+
+    private double[] deviation = {INITIAL_DEVIATION, INITIAL_DEVIATION, INITIAL_DEVIATION, INITIAL_DEVIATION};
+
+    /**
+     * The best candidate so far and its fitness on the games of its generation.
+     */
+    private double[] best = mean;
+
+    private double bestFitness = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @throws IllegalArgumentException if an option is unknown or its value is invalid.
+     */
+    Tuner(String[] args) {
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Not an option=value: " + arg);
+            }
+            String name = arg.substring(0, separator);
+            String value = arg.substring(separator + 1);
+            try {
+                switch (name) {
+                    case "generations":
+                        generations = Integer.parseInt(value);
+                        break;
+                    case "population":
+                        population = Integer.parseInt(value);
+                        break;
+                    case "elite":
+                        elite = Double.parseDouble(value);
+                        break;
+                    case "games":
+                        games = Integer.parseInt(value);
+                        break;
+                    case "seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "randomizer":
+                        randomizerId = Simulation.Options.randomizer(value);
+                        break;
+                    case "lookahead":
+                        lookahead = Integer.parseInt(value);
+                        break;
+                    case "max-pieces":
+                        maxPieces = Integer.parseInt(value);
+                        break;
+                    case "threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "checkpoint":
+                        checkpoint = Paths.get(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value of " + name + ": " + value);
+            }
+        }
+        if (population < 2 || games < 1 || elite <= 0 || elite > 1 || lookahead < 0 || maxPieces <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("population must be at least 2, elite in (0, 1], games, max-pieces"
+                    + " and threads positive and lookahead not negative");
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Tuner tuner;
+        try {
+            tuner = new Tuner(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java tetris.Tuner [generations=N] [population=N] [elite=F] [games=N] [seed=S]"
+                    + " [randomizer=uniform|bag] [lookahead=N] [max-pieces=N] [threads=N] [checkpoint=FILE]");
+            System.exit(2);
+            return;
+        }
+        if (Files.exists(tuner.checkpoint)) {
+            tuner.load();
+            System.out.println("# resumed from " + tuner.checkpoint + " at generation " + tuner.generation);
+        }
+        ForkJoinPool pool = new ForkJoinPool(tuner.threads);
+        try {
+            while (tuner.generation <= tuner.generations) {
+                tuner.runGeneration(pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println("weights=" + fromArray(tuner.mean).format());
+        System.out.println("best=" + fromArray(tuner.best).format());
+    }
+
+    /**
+     * Plays one generation, updates the distribution and writes the checkpoint.
+     */
+    void runGeneration(ForkJoinPool pool) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Random random = new Random(seed * 1000003 + generation);
+        double[][] candidates = new double[population][];
+        for (int i = 0; i < population; i++) {
+            double[] candidate = new double[WEIGHTS];
+            for (int j = 0; j < WEIGHTS; j++) {
+                candidate[j] = mean[j] + deviation[j] * random.nextGaussian();
+            }
+            candidates[i] = normalize(candidate);
+        }
+        final double[] fitness = evaluate(candidates, pool);
+
+        // The elite, best first.
+        Integer[] order = new Integer[population];
+        for (int i = 0; i < population; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(fitness[b], fitness[a]);
+            }
+        });
+        int eliteSize = Math.max(1, (int) Math.round(population * elite));
+        double eliteFitness = 0;
+        double[] newMean = new double[WEIGHTS];
+        for (int k = 0; k < eliteSize; k++) {
+            eliteFitness += fitness[order[k]] / eliteSize;
+            for (int j = 0; j < WEIGHTS; j++) {
+                newMean[j] += candidates[order[k]][j] / eliteSize;
+            }
+        }
+        double noise = NOISE / generation;
+        for (int j = 0; j < WEIGHTS; j++) {
+            double variance = 0;
+            for (int k = 0; k < eliteSize; k++) {
+                double d = candidates[order[k]][j] - newMean[j];
+                variance += d * d / eliteSize;
+            }
+            deviation[j] = Math.sqrt(variance + noise);
+        }
+        mean = newMean;
+        if (fitness[order[0]] > bestFitness) {
+            bestFitness = fitness[order[0]];
+            best = candidates[order[0]];
+        }
+
+        System.out.println(String.format(Locale.ROOT, "generation=%d best=%.1f elite=%.1f mean=%s deviation=%s seconds=%.1f",
+                generation, fitness[order[0]], eliteFitness, fromArray(mean).format(), fromArray(deviation).format(),
+                (System.nanoTime() - start) / 1e9));
+        generation++;
+        save();
+    }
+
+    /**
+     * The mean score of every candidate on the games of the current generation. All games of all candidates are
+     * played on the pool at once.
+     */
+    private double[] evaluate(double[][] candidates, ForkJoinPool pool) throws InterruptedException {
+        long[] seeds = new long[games];
+        for (int i = 0; i < games; i++) {
+            seeds[i] = seed + (long) (generation - 1) * games + i;
+        }
+        List<Callable<Simulation.Result>> tasks = new ArrayList<>(candidates.length * games);
+        for (double[] candidate : candidates) {
+            AutoPlayer autoPlayer = new AutoPlayer(fromArray(candidate), lookahead, 0, pool);
+            final Simulation simulation = new Simulation(randomizerId, autoPlayer, maxPieces, pool);
+            for (final long gameSeed : seeds) {
+                tasks.add(new Callable<Simulation.Result>() {
+                    @Override
+                    public Simulation.Result call() {
+                        return simulation.play(gameSeed);
+                    }
+                });
+            }
+        }
+        List<Future<Simulation.Result>> results = pool.invokeAll(tasks);
+        double[] fitness = new double[candidates.length];
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                fitness[i / games] += (double) results.get(i).get().score / games;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Game failed", e.getCause());
+            }
+        }
+        return fitness;
+    }
+
+    /**
+     * Writes the state to a temporary file which then replaces the checkpoint, so a crash leaves the previous one.
+     */
+    private void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("generation", Integer.toString(generation));
+        properties.setProperty("mean", fromArray(mean).format());
+        properties.setProperty("deviation", fromArray(deviation).format());
+        properties.setProperty("best", fromArray(best).format());
+        properties.setProperty("best-fitness", Double.toString(bestFitness));
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            properties.store(writer, "tetris.Tuner checkpoint");
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            generation = Integer.parseInt(properties.getProperty("generation"));
+            mean = toArray(AutoPlayer.Weights.parse(properties.getProperty("mean")));
+            deviation = toArray(AutoPlayer.Weights.parse(properties.getProperty("deviation")));
+            best = toArray(AutoPlayer.Weights.parse(properties.getProperty("best")));
+            bestFitness = Double.parseDouble(properties.getProperty("best-fitness"));
+        } catch (NullPointerException | IllegalArgumentException e) {
+            throw new IOException("Invalid checkpoint " + checkpoint, e);
+        }
+    }
+
+    private static double[] normalize(double[] weights) {
+        double length = 0;
+        for (double weight : weights) {
+            length += weight * weight;
+        }
+        length = Math.sqrt(length);
+        double[] normalized = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            normalized[i] = length == 0 ? 0 : weights[i] / length;
+        }
+        return normalized;
+    }
+
+    private static double[] toArray(AutoPlayer.Weights weights) {
+        return new double[]{weights.height, weights.holes, weights.bumpiness, weights.lines};
+    }
+
+    private static AutoPlayer.Weights fromArray(double[] weights) {
+        return new AutoPlayer.Weights(weights[0], weights[1], weights[2], weights[3]);
+    }
+}
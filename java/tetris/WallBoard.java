@@ -0,0 +1,129 @@
+package tetris;
+
+/**
+ * One game of a {@link BoardWall}: an engine played by an {@link AutoPlayer}, without nodes or transitions of its
+ * own.
+ * <p>
+ * The game is driven by the ticks of a {@link TickScheduler}. The player chooses a place for every new tetromino
+ * and then presses one key every {@link #INPUT_TICKS} ticks, like {@link BotPlayer}, while gravity pulls the
+ * tetromino down every {@link #GRAVITY_TICKS} ticks. A lost game starts again with the next seed after a pause.
+ */
+final class WallBoard implements TickScheduler.Client {
+
+    /**
+     * Ticks between two inputs of the player.
+     */
+    static final int INPUT_TICKS = 6;
+
+    static final int GRAVITY_TICKS = 30;
+
+    /**
+     * Ticks a lost game stays on the wall.
+     */
+    static final int GAME_OVER_TICKS = 120;
+
+    private final GameEngine engine = new GameEngine();
+
+    private final AutoPlayer autoPlayer;
+
+    private final int randomizerId;
+
+    /**
+     * Added to the seed for the next game, so the boards of a wall never play the same games.
+     */
+    private final long seedStep;
+
+    private long seed;
+
+    private AutoPlayer.Placement placement;
+
+    private int tick;
+
+    private int gameOverTicks;
+
+    private int score;
+
+    private int lines;
+
+    /**
+     * Incremented with every change which has to be drawn.
+     */
+    private int version;
+
+    WallBoard(AutoPlayer autoPlayer, int randomizerId, long seed, long seedStep) {
+        this.autoPlayer = autoPlayer;
+        this.randomizerId = randomizerId;
+        this.seedStep = seedStep;
+        this.seed = seed;
+        newGame();
+    }
+
+    private void newGame() {
+        engine.reset(Randomizer.create(randomizerId, seed));
+        seed += seedStep;
+        score = 0;
+        lines = 0;
+        placement = autoPlayer.decide(engine);
+        version++;
+    }
+
+    @Override
+    public void tick() {
+        tick++;
+        if (engine.isGameOver()) {
+            if (++gameOverTicks == GAME_OVER_TICKS) {
+                gameOverTicks = 0;
+                newGame();
+            }
+            return;
+        }
+        int result = GameEngine.IDLE;
+        if (tick % INPUT_TICKS == 0) {
+            result = input();
+        }
+        if (tick % GRAVITY_TICKS == 0 && result == GameEngine.IDLE) {
+            result = engine.step();
+            version++;
+        }
+        if (result == GameEngine.LOCKED) {
+            int rows = Integer.bitCount(engine.getClearedRows());
+            lines += rows;
+            score += GameEngine.points(rows);
+            placement = autoPlayer.decide(engine);
+        }
+    }
+
+    /**
+     * One key of the player: rotate, then move towards the chosen column, then drop.
+     *
+     * @return the result of a drop, otherwise {@link GameEngine#IDLE}.
+     */
+    private int input() {
+        boolean moved = false;
+        if (placement != null) {
+            if (engine.getRotation() != placement.rotation) {
+                moved = engine.rotate(true);
+            } else if (engine.getX() != placement.x) {
+                moved = engine.move(engine.getX() < placement.x ? 1 : -1);
+            }
+        }
+        version++;
+        return moved ? GameEngine.IDLE : engine.hardDrop();
+    }
+
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
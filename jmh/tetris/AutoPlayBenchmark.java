@@ -0,0 +1,61 @@
+package tetris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placements per second of {@link AutoPlayer} on a {@link GameEngine}, from the decision to the locked
+ * tetromino. A finished game is restarted within the measurement.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AutoPlayBenchmark {
+
+    /**
+     * Number of tetrominos of the queue the player looks at.
+     */
+    @Param({"0", "1"})
+    public int lookahead;
+
+    private GameEngine engine;
+
+    private AutoPlayer autoPlayer;
+
+    @Setup
+    public void setUp() {
+        engine = new GameEngine(Randomizer.create(Randomizer.UNIFORM, 42));
+        engine.reset();
+        autoPlayer = new AutoPlayer(AutoPlayer.Weights.DEFAULT, lookahead, 0, ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public int placement() {
+        if (engine.isGameOver()) {
+            engine.reset();
+        }
+        AutoPlayer.Placement placement = autoPlayer.decide(engine);
+        if (placement != null) {
+            while (engine.getRotation() != placement.rotation && engine.rotate(true)) {
+            }
+            while (engine.getX() != placement.x && engine.move(engine.getX() < placement.x ? 1 : -1)) {
+            }
+        }
+        return engine.hardDrop();
+    }
+}
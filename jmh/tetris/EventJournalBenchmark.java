@@ -0,0 +1,49 @@
+package tetris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of recording one event, which is what the JavaFX thread pays per input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventJournalBenchmark {
+
+    private EventJournal journal;
+
+    @Setup
+    public void setUp() {
+        journal = new EventJournal(EventJournal.DISCARD);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        journal.close();
+    }
+
+    @Benchmark
+    public void off() {
+        EventJournal.OFF.record(EventJournal.INPUT, Action.MOVE_LEFT, 0);
+    }
+
+    @Benchmark
+    public void record() {
+        journal.record(EventJournal.INPUT, Action.MOVE_LEFT, 0);
+    }
+}
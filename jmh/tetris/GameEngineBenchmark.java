@@ -0,0 +1,149 @@
+package tetris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the hot paths of {@link GameEngine}: collision checks, rotation, hard drop and line clears.
+ * <p>
+ * The benchmarks need no JavaFX and run on any headless box, e.g. with
+ * {@code java -cp <classes>:<jmh jars> org.openjdk.jmh.Main tetris.*Benchmark}.
+ * Benchmarks which lock a tetromino first restore the position from a template, {@link #restore(Filled)}
+ * measures that part alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameEngineBenchmark {
+
+    /**
+     * A board filled up to a given height, every row with one hole.
+     */
+    @State(Scope.Thread)
+    public static class Filled {
+
+        @Param({"EMPTY", "HALF", "NEARLY_FULL"})
+        public String fill;
+
+        private static final int POSITIONS = 256;
+
+        private final int[] positionX = new int[POSITIONS];
+
+        private final int[] positionY = new int[POSITIONS];
+
+        private int position;
+
+        private final TetrominoShape.Orientation orientation = TetrominoShape.T.getOrientation(0);
+
+        private GameEngine template;
+
+        private GameEngine engine;
+
+        @Setup
+        public void setUp() {
+            template = new GameEngine(Randomizer.create(Randomizer.UNIFORM, 42));
+            template.reset();
+            int filledRows = fill.equals("EMPTY") ? 0 : fill.equals("HALF") ? GameEngine.VISIBLE_ROWS / 2 : GameEngine.VISIBLE_ROWS - 3;
+            for (int i = 0; i < filledRows; i++) {
+                template.fillRow(GameEngine.ROWS - 1 - i, ((1 << GameEngine.COLUMNS) - 1) & ~(1 << (i * 3 % GameEngine.COLUMNS)), 0);
+            }
+            engine = new GameEngine(Randomizer.create(Randomizer.UNIFORM, 42));
+            engine.copyFrom(template);
+
+            Random random = new Random(7);
+            for (int i = 0; i < POSITIONS; i++) {
+                positionX[i] = random.nextInt(GameEngine.COLUMNS - 2);
+                positionY[i] = random.nextInt(GameEngine.ROWS - 1);
+            }
+        }
+    }
+
+    /**
+     * A vertical I next to the left wall above four rows of which the given number are complete but column 0.
+     */
+    @State(Scope.Thread)
+    public static class LineClear {
+
+        @Param({"1", "2", "3", "4"})
+        public int lines;
+
+        private GameEngine template;
+
+        private GameEngine engine;
+
+        @Setup
+        public void setUp() {
+            template = new GameEngine(new AlwaysI());
+            template.reset();
+            int columns = ((1 << GameEngine.COLUMNS) - 1) & ~1;
+            for (int i = 0; i < 4; i++) {
+                template.fillRow(GameEngine.ROWS - 1 - i, i < lines ? columns : columns & ~(1 << 5), 0);
+            }
+            template.rotate(true);
+            while (template.move(-1)) {
+            }
+            engine = new GameEngine(new AlwaysI());
+            engine.copyFrom(template);
+        }
+    }
+
+    private static final class AlwaysI extends Randomizer {
+
+        private AlwaysI() {
+            super(0);
+        }
+
+        @Override
+        int next() {
+            return 0;
+        }
+
+        @Override
+        int getId() {
+            return UNIFORM;
+        }
+    }
+
+    @Benchmark
+    public boolean intersects(Filled state) {
+        int i = state.position++ & Filled.POSITIONS - 1;
+        return state.template.intersects(state.orientation, state.positionX[i], state.positionY[i]);
+    }
+
+    @Benchmark
+    public boolean rotate(Filled state) {
+        return state.engine.rotate(true);
+    }
+
+    @Benchmark
+    public void restore(Filled state) {
+        state.engine.copyFrom(state.template);
+    }
+
+    @Benchmark
+    public int hardDrop(Filled state) {
+        state.engine.copyFrom(state.template);
+        return state.engine.hardDrop();
+    }
+
+    @Benchmark
+    public int lineClear(LineClear state) {
+        state.engine.copyFrom(state.template);
+        state.engine.hardDrop();
+        return state.engine.getClearedRows();
+    }
+}
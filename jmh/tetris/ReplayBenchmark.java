@@ -0,0 +1,73 @@
+package tetris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of recording, saving and loading a {@link Replay} of a game with 10000 actions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReplayBenchmark {
+
+    private static final int ACTIONS = 10000;
+
+    private final long[] times = new long[ACTIONS];
+
+    private final byte[] codes = new byte[ACTIONS];
+
+    private Replay replay;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long time = 0;
+        for (int i = 0; i < ACTIONS; i++) {
+            time += 50000000L + random.nextInt(500000000);
+            times[i] = time;
+            codes[i] = (byte) (1 + random.nextInt(4));
+        }
+        replay = record();
+        bytes = replay.toBytes();
+        for (int i = 0; i < 1000; i++) {
+            replay.addTetromino(random.nextInt(7));
+        }
+    }
+
+    @Benchmark
+    public Replay record() {
+        Replay replay = new Replay();
+        for (int i = 0; i < ACTIONS; i++) {
+            replay.addAction(times[i], codes[i]);
+        }
+        return replay;
+    }
+
+    @Benchmark
+    public byte[] save() {
+        return replay.toBytes();
+    }
+
+    @Benchmark
+    public Replay load() throws IOException {
+        return Replay.fromBytes(bytes);
+    }
+}